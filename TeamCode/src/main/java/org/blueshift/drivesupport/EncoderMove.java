@@ -0,0 +1,108 @@
+package org.blueshift.drivesupport;
+
+/**
+ * One encoder drive, running without holding up the OpMode. The move is started by the drive (e.g.
+ * TankDrive.startEncoderMove(...)) and then checked on with update() from the OpMode's loop, so the
+ * OpMode can do other work (or stop) while the robot drives. The motors are only checked on every
+ * POLL_INTERVAL_MS, however often update() is called. How a move checks on the motors and how it
+ * stops the robot is up to each kind of move (see {@link ProfiledMove}).
+ *
+ * The move finishes once the motors reach their targets, when its timeout runs out, or when it is
+ * cancelled. Either way the robot is stopped and the encoders are turned back off.
+ *
+ * @author Gabriel Wong
+ * @version 1.1
+ */
+
+public abstract class EncoderMove {
+    //The least time between two checks of whether the motors are still busy
+    public static final long POLL_INTERVAL_MS = 25;
+
+    private final long startTime, endTime;
+
+    private long nextPoll = 0;
+    private boolean finished = false, timedOut = false, cancelled = false;
+
+    /**
+     * @param timeoutMs - The longest the move may take, in milliseconds.
+     */
+    protected EncoderMove(long timeoutMs) {
+        this.startTime = System.nanoTime() / 1000000;
+        this.endTime = startTime + timeoutMs;
+    }
+
+    /**
+     * Check on the motors (no more often than every POLL_INTERVAL_MS).
+     *
+     * @param elapsedMs - The time since the move started, in milliseconds.
+     * @return boolean - Whether the move has reached its target.
+     */
+    protected abstract boolean poll(long elapsedMs);
+
+    /** Stop the robot and turn the encoders back off. Called once, however the move ends. */
+    protected abstract void end();
+
+    /**
+     * Check on the move, finishing it if the motors have reached their targets or it has run out of
+     * time. Cheap to call as often as wanted.
+     *
+     * @return boolean - Whether the move is finished.
+     */
+    public boolean update() {
+        if (finished) { return true; }
+
+        long now = System.nanoTime() / 1000000;
+
+        if (now >= endTime) {
+            timedOut = true;
+            finish();
+        } else if (now >= nextPoll) {
+            nextPoll = now + POLL_INTERVAL_MS;
+
+            if (poll(now - startTime)) {
+                finish();
+            }
+        }
+
+        return finished;
+    }
+
+    /**
+     * Wait for the move to finish, checking on it every POLL_INTERVAL_MS. If the thread is
+     * interrupted (the OpMode was stopped) the move is cancelled right away.
+     */
+    public void await() {
+        while (!update()) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Stop the robot right away and end the move. Does nothing if the move is already finished. */
+    public void cancel() {
+        if (finished) { return; }
+
+        cancelled = true;
+        finish();
+    }
+
+    private void finish() {
+        finished = true;
+        end();
+    }
+
+    public boolean isFinished() { return finished; }
+
+    /** @return boolean - Whether the move ended because its timeout ran out. */
+    public boolean isTimedOut() { return timedOut; }
+
+    /** @return boolean - Whether the move ended because it was cancelled. */
+    public boolean isCancelled() { return cancelled; }
+
+    /** @return long - The time left before the move times out, in milliseconds. */
+    public long getTimeLeft() { return Math.max(0, endTime - System.nanoTime() / 1000000); }
+}
@@ -78,6 +78,18 @@ public class Gyroscope {
         gravity = gyroscope.getGravity();
     }
 
+    /**
+     * Read only the heading from the gyroscope, without the gravity that updateHeading() also reads.
+     * This is quicker for loops that only need the heading.
+     *
+     * @return double - The heading in radians.
+     */
+    public double readHeading() {
+        updateOrientation();
+        heading = orientation.firstAngle;
+        return heading;
+    }
+
     /** @return The heading as a double value in radians. */
     public double getHeading() {
         updateHeading();
@@ -0,0 +1,84 @@
+package org.blueshift.drivesupport;
+
+import com.qualcomm.robotcore.util.Range;
+
+/**
+ * A PID controller for holding the robot's heading. It is given the heading error (how far the
+ * robot has turned away from where it should point, wrapped to [-pi, pi] so it never turns the long
+ * way around) and returns the rotation power that turns it back. The integral is limited so that it
+ * cannot wind up while the robot is held against a wall, and the output is limited so that the
+ * correction never takes over the drive.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class HeadingPID {
+    private final double kP, kI, kD;
+    private final double maxIntegral, maxOutput;
+
+    private double integral = 0;
+    private double lastError = 0;
+    private boolean hasLastError = false;
+
+    /**
+     * @param kP          - Rotation power per radian of error.
+     * @param kI          - Rotation power per radian-second of error.
+     * @param kD          - Rotation power per radian/s that the error is changing by.
+     * @param maxIntegral - The most the integral term may add (rotation power).
+     * @param maxOutput   - The most rotation power the controller may return.
+     */
+    public HeadingPID(double kP, double kI, double kD, double maxIntegral, double maxOutput) {
+        this.kP = kP;
+        this.kI = kI;
+        this.kD = kD;
+        this.maxIntegral = maxIntegral;
+        this.maxOutput = maxOutput;
+    }
+
+    /**
+     * @param error   - (radians) The heading minus the heading to hold, in any range.
+     * @param seconds - The time since the last update.
+     * @return double - [-maxOutput, maxOutput], The rotation power to correct the heading with.
+     */
+    public double update(double error, double seconds) {
+        error = wrapAngle(error);
+
+        double derivative = 0;
+
+        if (hasLastError && seconds > 0) {
+            derivative = wrapAngle(error - lastError) / seconds;
+        }
+
+        if (kI != 0) {
+            integral = Range.clip(integral + error * seconds, -maxIntegral / kI, maxIntegral / kI);
+        }
+
+        lastError = error;
+        hasLastError = true;
+
+        return Range.clip(kP * error + kI * integral + kD * derivative, -maxOutput, maxOutput);
+    }
+
+    /** Forget the integral and the last error (when the heading to hold changes). */
+    public void reset() {
+        integral = 0;
+        hasLastError = false;
+    }
+
+    /**
+     * @param angle - (radians) Any angle.
+     * @return double - [-pi, pi], The same angle.
+     */
+    public static double wrapAngle(double angle) {
+        angle %= 2 * Math.PI;
+
+        if (angle > Math.PI) {
+            angle -= 2 * Math.PI;
+        } else if (angle < -Math.PI) {
+            angle += 2 * Math.PI;
+        }
+
+        return angle;
+    }
+}
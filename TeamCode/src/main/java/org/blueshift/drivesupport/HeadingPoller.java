@@ -0,0 +1,80 @@
+package org.blueshift.drivesupport;
+
+/**
+ * Reads the heading from a gyroscope on its own thread, so that an OpMode's loop can get the
+ * heading without waiting on an I2C read every time. The newest heading and the time it was read
+ * are kept, and are replaced every period. While the poller is running nothing else should read
+ * from the gyroscope.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class HeadingPoller implements Runnable {
+    //The default time between two readings of the gyroscope
+    public static final long DEFAULT_PERIOD_MS = 10;
+
+    private final Gyroscope gyroscope;
+    private final long periodMs;
+
+    private volatile double heading = 0;
+    private volatile long sampleTime = 0;
+
+    private Thread thread;
+
+    /**
+     * @param gyroscope - The gyroscope to read (already initialized).
+     * @param periodMs  - The time between two readings, in milliseconds.
+     */
+    public HeadingPoller(Gyroscope gyroscope, long periodMs) {
+        this.gyroscope = gyroscope;
+        this.periodMs = periodMs;
+    }
+
+    public HeadingPoller(Gyroscope gyroscope) {
+        this(gyroscope, DEFAULT_PERIOD_MS);
+    }
+
+    /** Read the heading once (so there is one right away) and start reading it in the background. */
+    public synchronized void start() {
+        if (thread != null) { return; }
+
+        sample();
+
+        thread = new Thread(this, "HeadingPoller");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stop reading the heading. The last heading read can still be gotten. */
+    public synchronized void stop() {
+        if (thread == null) { return; }
+
+        thread.interrupt();
+        thread = null;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            sample();
+
+            try {
+                Thread.sleep(periodMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sample() {
+        heading = gyroscope.readHeading();
+        sampleTime = System.nanoTime() / 1000000;
+    }
+
+    /** @return double - (radians) The newest heading read from the gyroscope. */
+    public double getHeading() { return heading; }
+
+    /** @return long - When the newest heading was read (System.nanoTime() in milliseconds). */
+    public long getSampleTime() { return sampleTime; }
+}
@@ -11,7 +11,7 @@ import java.lang.Math;
  * readable and easier to follow.
  *
  * @author Gabriel Wong
- * @version 1.0
+ * @version 1.4
  */
 public class MecanumDrive {
     private DcMotor[] motors = {null, null, null, null};
@@ -31,6 +31,51 @@ public class MecanumDrive {
     private static final double ENCODER_DRIVE_SPEED = 0.5;
     private static final double INCHES_PER_FEET     = 12.0;
 
+    //How fast a wheel's encoder counts at full power, and the limits of profiled moves (ticks, seconds)
+    public static final double FULL_POWER_TICKS_PER_SECOND = 2800;
+    public static final double PROFILE_MAX_VELOCITY        = 2200;
+    public static final double PROFILE_MAX_ACCELERATION    = 3000;
+    public static final double PROFILE_MAX_JERK            = 20000;
+    public static final long   PROFILE_TIMEOUT_MS          = 6250;
+
+    //The profiled move in progress (see startProfiledMove())
+    private ProfiledMove currentMove;
+
+    //Heading hold (see setHeadingHold()). The gyroscope is read at most every HEADING_PERIOD_MS (or
+    //taken from a HeadingPoller), and the correction is kept between readings. HEADING_DIRECTION
+    //flips it if the robot turns away
+    public static final long   HEADING_PERIOD_MS      = 20;
+    public static final double HEADING_KP             = 1.2;
+    public static final double HEADING_KI             = 0.2;
+    public static final double HEADING_KD             = 0.08;
+    public static final double HEADING_MAX_INTEGRAL   = 0.1;
+    public static final double HEADING_MAX_CORRECTION = 0.5;
+    public static final double HEADING_DIRECTION      = 1.0;
+    public static final double ROTATION_DEADBAND      = 0.02;
+
+    private final HeadingPID headingPID = new HeadingPID(HEADING_KP, HEADING_KI, HEADING_KD,
+            HEADING_MAX_INTEGRAL, HEADING_MAX_CORRECTION);
+
+    private boolean headingHold = false, retarget = true;
+    private double targetHeading;
+    private double headingCorrection = 0;
+    private long lastHeadingSample = 0, headingElapsed = 0;
+
+    //Field-centric driving (see setFieldCentric()), and where the heading is read from if not the gyroscope
+    private boolean fieldCentric = false;
+    private HeadingPoller headingPoller;
+
+    //Odometry (see updateOdometry()): the encoder positions at the last update, how far each wheel
+    //rolled since then (inches), and the heading on the field (not moved by resetHeading())
+    private final int[] lastPositions = new int[4];
+    private final double[] wheelTravel = new double[4];
+    private double startHeading, fieldHeading;
+    private boolean odometryReady = false;
+
+    //How hard driveTowards() slows down near the point (power per inch), and the least power it uses
+    public static final double DRIVE_TO_KP        = 0.05;
+    public static final double DRIVE_TO_MIN_SPEED = 0.15;
+
     /**
      * Initialize all four motors according to the four parameters so that they can be controlled
      * later. These are, in fact, aliases to the original motors, so setting one's power will also
@@ -84,29 +129,183 @@ public class MecanumDrive {
         this.gyroscope = gyroscope;
         updateHeading();
         referenceHeading = heading;
+        startHeading = referenceHeading;
+        heading = 0;
 
         useEncoders(false);
     }
 
     /**
      * This drives the robot with the three given parameters, accounting for the differing way that
-     * the mecanum wheels are driven compared to conventional wheels.
+     * the mecanum wheels are driven compared to conventional wheels. When driving field-centric, the
+     * angle is taken on the field (from where the robot pointed at the start or at the last
+     * resetHeading()) rather than from the robot. With heading hold on, a correction is added to the
+     * rotation whenever the driver is not turning, so that strafing does not turn the robot.
      *
      * @param dAngle     - [0, 2pi], The desired angle for the robot to travel at.
      * @param dSpeed     - [0 , 1], The desired speed for the robot to travel at.
      * @param dRotation  - [-1, 1], The desired speed of rotation for the robot.
      */
     public void drive(double dAngle, double dSpeed, double dRotation) {
+        boolean newSample = (headingHold || fieldCentric) && sampleHeading();
+
+        if (fieldCentric) {
+            //The angle is given on the field, and the robot has turned by its heading since the start
+            dAngle -= heading;
+        }
+
+        if (headingHold) {
+            dRotation += holdHeading(dRotation, newSample);
+        }
+
+        setPowers(dAngle, dSpeed, dRotation);
+    }
+
+    /**
+     * Give each wheel its power for driving at an angle (from the robot) while turning. If a wheel
+     * would get more than full power, every wheel is scaled down together so that the robot keeps
+     * its direction.
+     */
+    private void setPowers(double dAngle, double dSpeed, double dRotation) {
         motorPowers[0] = dSpeed * Math.cos(dAngle + (Math.PI/4)) - dRotation;
         motorPowers[1] = dSpeed * Math.sin(dAngle + (Math.PI/4)) + dRotation;
         motorPowers[2] = dSpeed * Math.sin(dAngle + (Math.PI/4)) - dRotation;
         motorPowers[3] = dSpeed * Math.cos(dAngle + (Math.PI/4)) + dRotation;
 
+        double largest = 1.0;
+
+        for (double power : motorPowers) {
+            largest = Math.max(largest, Math.abs(power));
+        }
+
         for (int i = 0; i < motors.length; i++) {
+            motorPowers[i] /= largest;
             motors[i].setPower(motorPowers[i]);
         }
     }
 
+    /**
+     * Turn heading hold on or off. While it is on, drive() keeps the robot pointing where it was when
+     * the driver last stopped turning (see HeadingPID). Needs the gyroscope constructor.
+     *
+     * @param headingHold - Whether to hold the heading.
+     */
+    public void setHeadingHold(boolean headingHold) {
+        if (headingHold && gyroscope == null) {
+            throw new IllegalStateException("Heading hold needs a gyroscope");
+        }
+
+        this.headingHold = headingHold;
+        retarget = true;
+    }
+
+    public boolean isHeadingHold() { return headingHold; }
+
+    /**
+     * Turn field-centric driving on or off. While it is on, the angle given to drive() is taken on
+     * the field, so pushing the stick away from the driver always drives away from the driver however
+     * the robot has turned. Needs the gyroscope constructor.
+     *
+     * @param fieldCentric - Whether the angle given to drive() is on the field.
+     */
+    public void setFieldCentric(boolean fieldCentric) {
+        if (fieldCentric && gyroscope == null) {
+            throw new IllegalStateException("Field-centric driving needs a gyroscope");
+        }
+
+        this.fieldCentric = fieldCentric;
+    }
+
+    public boolean isFieldCentric() { return fieldCentric; }
+
+    /**
+     * Read the heading from a poller running in the background instead of from the gyroscope, so
+     * that drive() never waits on the gyroscope (see HeadingPoller). The poller has to be started.
+     *
+     * @param headingPoller - The poller reading this drive's gyroscope, or null to read it directly.
+     */
+    public void setHeadingPoller(HeadingPoller headingPoller) {
+        this.headingPoller = headingPoller;
+        lastHeadingSample = 0;
+    }
+
+    /**
+     * Take the way the robot points right now as a heading of zero, both for field-centric driving
+     * and for the heading being held. For when the gyroscope has drifted, or the robot was not
+     * pointing down the field when the OpMode started.
+     */
+    public void resetHeading() {
+        updateHeading();
+        referenceHeading += heading;
+        heading = 0;
+        retarget = true;
+    }
+
+    /**
+     * Hold a certain heading from now on, instead of the one the robot was at.
+     *
+     * @param targetHeading - (radians) The heading to hold, relative to the starting heading.
+     */
+    public void setTargetHeading(double targetHeading) {
+        this.targetHeading = targetHeading;
+        retarget = false;
+        headingPID.reset();
+    }
+
+    /** @return double - (radians) The heading being held, relative to the starting heading. */
+    public double getTargetHeading() { return targetHeading; }
+
+    /**
+     * Hold whatever heading the robot is at when drive() is next called, instead of turning back to
+     * the one held before. Call this whenever the robot is turned by something other than drive(),
+     * such as a TankDrive on the same motors.
+     */
+    public void holdCurrentHeading() { retarget = true; }
+
+    /**
+     * Update the heading if there is a newer reading: the poller's newest one, or else a reading of
+     * the gyroscope if the last is at least HEADING_PERIOD_MS old.
+     *
+     * @return boolean - Whether the heading was updated.
+     */
+    private boolean sampleHeading() {
+        long sampleTime;
+
+        if (headingPoller != null) {
+            sampleTime = headingPoller.getSampleTime();
+            if (sampleTime == lastHeadingSample) { return false; }
+        } else {
+            sampleTime = System.nanoTime() / 1000000;
+            if (sampleTime - lastHeadingSample < HEADING_PERIOD_MS) { return false; }
+        }
+
+        headingElapsed = sampleTime - lastHeadingSample;
+        lastHeadingSample = sampleTime;
+        updateHeading();
+
+        return true;
+    }
+
+    /**
+     * Find the rotation needed to hold the heading. While the driver is turning, the heading they end
+     * on becomes the one to hold.
+     *
+     * @param dRotation - The driver's rotation.
+     * @param newSample - Whether the heading has been updated since the last call.
+     * @return double - The rotation to add to the driver's.
+     */
+    private double holdHeading(double dRotation, boolean newSample) {
+        if (retarget || Math.abs(dRotation) > ROTATION_DEADBAND) {
+            setTargetHeading(heading);
+            headingCorrection = 0;
+        } else if (newSample) {
+            //Driving with a positive rotation lowers the gyroscope's heading
+            headingCorrection = HEADING_DIRECTION * headingPID.update(heading - targetHeading, headingElapsed / 1000.0);
+        }
+
+        return headingCorrection;
+    }
+
     /**
      * Turn on the encoders to the RUN_TO_POSITION mode (encoderState = true) or disable the
      * encoders (encoderState = false).
@@ -114,6 +313,11 @@ public class MecanumDrive {
      * @param encoderState - Whether the encoders should be turned on or not.
      */
     public void useEncoders(boolean encoderState) {
+        //Count what the wheels rolled before the encoders are reset, then count from zero
+        if (odometryReady) {
+            updateOdometry();
+        }
+
         if (encoderState) {
             for (int i = 0; i < motors.length; i++) {
                 motors[i].setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
@@ -125,10 +329,203 @@ public class MecanumDrive {
                 motors[i].setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
             }
         }
+
+        for (int i = 0; i < lastPositions.length; i++) {
+            lastPositions[i] = 0;
+        }
+
+        odometryReady = currentLocation != null;
+    }
+
+    /**
+     * Drive a certain distance at an angle along an S-curve motion profile (see
+     * {@link MotionProfile}) under the PROFILE_MAX_* limits, without turning. Waits for the move to
+     * finish, but ends it early if the OpMode is stopped. The distance is how far the fastest turning
+     * wheels roll, which is how far the robot goes when driving straight; strafing goes less far.
+     *
+     * @param dAngle - [0, 2pi], The desired angle for the robot to travel at.
+     * @param inches - How far to drive.
+     */
+    public void driveDistance(double dAngle, double inches) {
+        MotionProfile profile = MotionProfile.sCurve(inches * COUNTS_PER_INCH, PROFILE_MAX_VELOCITY,
+                PROFILE_MAX_ACCELERATION, PROFILE_MAX_JERK);
+
+        startProfiledMove(dAngle, profile, PROFILE_TIMEOUT_MS).await();
     }
 
+    /**
+     * Start following a motion profile (in encoder ticks of the fastest turning wheels) at an angle
+     * and return right away (see {@link ProfiledMove}). Starting a new move cancels the one before it.
+     *
+     * @param dAngle    - [0, 2pi], The desired angle for the robot to travel at.
+     * @param profile   - The profile to follow.
+     * @param timeoutMs - The longest the move may take, in milliseconds.
+     * @return ProfiledMove - The running move.
+     */
+    public ProfiledMove startProfiledMove(double dAngle, MotionProfile profile, long timeoutMs) {
+        if (currentMove != null) {
+            currentMove.cancel();
+        }
+
+        //The share of the power each wheel gets at this angle (as in drive()), the fastest being 1
+        final double[] shares = {
+                Math.cos(dAngle + (Math.PI/4)),
+                Math.sin(dAngle + (Math.PI/4)),
+                Math.sin(dAngle + (Math.PI/4)),
+                Math.cos(dAngle + (Math.PI/4))
+        };
+
+        double largest = Math.max(Math.abs(shares[0]), Math.abs(shares[1]));
+        double sumOfSquares = 0;
+
+        for (int i = 0; i < shares.length; i++) {
+            shares[i] /= largest;
+            sumOfSquares += shares[i] * shares[i];
+        }
+
+        final double norm = sumOfSquares;
+
+        useEncoders(true);
+
+        currentMove = new ProfiledMove(profile, FULL_POWER_TICKS_PER_SECOND, timeoutMs) {
+            @Override
+            protected double getPosition() {
+                //Least squares fit of how far along the move every wheel's encoder says the robot is
+                double position = 0;
+
+                for (int i = 0; i < motors.length; i++) {
+                    position += shares[i] * motors[i].getCurrentPosition();
+                }
+
+                return position / norm;
+            }
+
+            @Override
+            protected void setPower(double power) {
+                for (int i = 0; i < motors.length; i++) {
+                    motorPowers[i] = shares[i] * power;
+                    motors[i].setPower(motorPowers[i]);
+                }
+            }
+
+            @Override
+            protected void end() {
+                MecanumDrive.this.stop();
+                useEncoders(false);
+            }
+        };
+
+        return currentMove;
+    }
+
+    /**
+     * Find where the robot is from how far each wheel has rolled since the last update, and the
+     * heading from the gyroscope. The wheels' travel is turned into a strafe and a forward move
+     * (mecanum forward kinematics), which is turned onto the field with the heading halfway through
+     * the update and added to the current location. Nothing is allocated, so this can be called every
+     * loop. Needs the gyroscope constructor.
+     *
+     * The location is in inches, with y forward and x to the right of where the robot pointed at the
+     * start. The encoders must count the same way as the powers drive() gives the wheels.
+     *
+     * The heading is read with updateHeading(), which leaves the timing of heading hold's samples
+     * alone, so this can be called between calls to drive().
+     */
+    public void updateOdometry() {
+        if (currentLocation == null) {
+            throw new IllegalStateException("Odometry needs a start location and a gyroscope");
+        }
+
+        updateHeading();
+        addWheelTravel();
+    }
+
+    /** Add how far the wheels have rolled since the last update to the location, at the current heading. */
+    private void addWheelTravel() {
+        for (int i = 0; i < motors.length; i++) {
+            int position = motors[i].getCurrentPosition();
+            wheelTravel[i] = (position - lastPositions[i]) / COUNTS_PER_INCH;
+            lastPositions[i] = position;
+        }
+
+        //The inverse of the powers drive() gives the wheels (without the rotation, which cancels out)
+        double strafe  = ( wheelTravel[0] + wheelTravel[1] + wheelTravel[2] + wheelTravel[3]) / 4;
+        double forward = (-wheelTravel[0] + wheelTravel[1] + wheelTravel[2] - wheelTravel[3]) / 4;
+
+        double newHeading = heading + referenceHeading - startHeading;
+        double midHeading = fieldHeading + HeadingPID.wrapAngle(newHeading - fieldHeading) / 2;
+        fieldHeading = newHeading;
+
+        double cos = Math.cos(midHeading);
+        double sin = Math.sin(midHeading);
+
+        currentLocation.translate(strafe * cos - forward * sin, strafe * sin + forward * cos);
+    }
+
+    /**
+     * Drive towards a point on the field, found with the odometry, slowing down as the robot gets
+     * close. Holds the heading if heading hold is on. Meant to be called every loop until it returns
+     * true, at which point the robot is stopped.
+     *
+     * @param x         - (inches) Where to drive to, to the right of the start.
+     * @param y         - (inches) Where to drive to, in front of the start.
+     * @param maxSpeed  - [0, 1], The fastest to drive.
+     * @param tolerance - (inches) How close to the point counts as there.
+     * @return boolean - Whether the robot has reached the point.
+     */
+    public boolean driveTowards(double x, double y, double maxSpeed, double tolerance) {
+        if (currentLocation == null) {
+            throw new IllegalStateException("Odometry needs a start location and a gyroscope");
+        }
+
+        //One reading is shared by heading hold and the odometry, which needs the heading every loop
+        boolean newSample = sampleHeading();
+        if (!newSample) {
+            updateHeading();
+        }
+
+        addWheelTravel();
+
+        double dx = x - currentLocation.getX();
+        double dy = y - currentLocation.getY();
+        double distance = Math.hypot(dx, dy);
+
+        if (distance <= tolerance) {
+            stop();
+            return true;
+        }
+
+        double speed = Math.max(DRIVE_TO_MIN_SPEED, Math.min(maxSpeed, distance * DRIVE_TO_KP));
+        double rotation = headingHold ? holdHeading(0, newSample) : 0;
+
+        //The angle to the point on the field, less the way the robot points on the field
+        setPowers(Math.atan2(dy, dx) - fieldHeading, speed, rotation);
+        return false;
+    }
+
+    /** @return FieldPoint - Where the odometry has the robot (kept up to date, so not a copy). */
+    public FieldPoint getLocation() { return currentLocation; }
+
+    /**
+     * Tell the odometry where the robot is, e.g. after lining up against a wall.
+     *
+     * @param x - (inches) To the right of the start.
+     * @param y - (inches) In front of the start.
+     */
+    public void setLocation(double x, double y) { currentLocation.setLocation(x, y); }
+
+    /** @return double - (radians) The heading on the field, as of the last updateOdometry(). */
+    public double getFieldHeading() { return fieldHeading; }
+
+    /** @return double - How far the wheels have rolled on average since the encoders were reset (ticks). */
     public double avgEncoders() {
-        return (motors[2].getCurrentPosition() + motors[3].getCurrentPosition())/2;
+        double sum = 0;
+
+        for (DcMotor motor : motors) {
+            sum += Math.abs(motor.getCurrentPosition());
+        }
+
+        return sum / motors.length;
     }
 
     /**
@@ -136,14 +533,20 @@ public class MecanumDrive {
      * keep the mecanum drive going straight without drifting as it drives autonomously.
      */
     public void updateHeading() {
-        gyroscope.updateHeading();
-        heading = this.gyroscope.getHeading() - referenceHeading;
+        double reading = headingPoller != null ? headingPoller.getHeading() : gyroscope.readHeading();
+        heading = reading - referenceHeading;
     }
 
+    /** @return double - (radians) The heading from the last gyroscope reading, relative to the start. */
+    public double getHeading() { return heading; }
+
     /**
      * This function will stop the robot by setting all of the motor's powers to zero.
      */
     public void stop() {
+        //Whatever turning happens while stopped (or with another drive) is kept
+        holdCurrentHeading();
+
         for (int i = 0; i < motors.length; i++) {
             motorPowers[i] = 0;
             motors[i].setPower(motorPowers[i]);
@@ -0,0 +1,195 @@
+package org.blueshift.drivesupport;
+
+/**
+ * A precomputed schedule of where the robot should be, and how fast it should be going, at every
+ * step of a move of a given distance. Following it instead of jumping straight to a fixed power
+ * lets a move speed up and slow down smoothly, so it can go faster without overshooting.
+ *
+ * A trapezoidal profile speeds up at the acceleration limit, cruises at the velocity limit and then
+ * slows down again (only a triangle if the move is too short to reach the velocity limit). An
+ * S-curve profile also limits the jerk (the change in acceleration): it is the trapezoid smoothed
+ * with a moving average as long as it takes to reach full acceleration at the jerk limit, which
+ * keeps the distance the same and makes the move longer by that time (twice that time for a move too
+ * short to cruise).
+ *
+ * The schedule is kept in primitive arrays sampled every dt seconds. Any units can be used as long
+ * as they agree (e.g. encoder ticks, ticks/s, ticks/s^2 and ticks/s^3).
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class MotionProfile {
+    //The default time between samples of the schedule (s)
+    public static final double DEFAULT_DT = 0.01;
+
+    private final double dt;
+    private final double[] positions;
+    private final double[] velocities;
+
+    private MotionProfile(double dt, double[] positions, double[] velocities) {
+        this.dt = dt;
+        this.positions = positions;
+        this.velocities = velocities;
+    }
+
+    /**
+     * @param distance        - How far to move (may be negative).
+     * @param maxVelocity     - The fastest to move (> 0).
+     * @param maxAcceleration - The fastest to speed up or slow down (> 0).
+     * @return MotionProfile - A trapezoidal profile sampled every DEFAULT_DT seconds.
+     */
+    public static MotionProfile trapezoidal(double distance, double maxVelocity, double maxAcceleration) {
+        return trapezoidal(distance, maxVelocity, maxAcceleration, DEFAULT_DT);
+    }
+
+    /**
+     * @param distance        - How far to move (may be negative).
+     * @param maxVelocity     - The fastest to move (> 0).
+     * @param maxAcceleration - The fastest to speed up or slow down (> 0).
+     * @param dt              - The time between samples (s).
+     * @return MotionProfile - A trapezoidal profile.
+     */
+    public static MotionProfile trapezoidal(double distance, double maxVelocity, double maxAcceleration, double dt) {
+        checkLimits(maxVelocity, maxAcceleration, dt);
+
+        double sign = Math.signum(distance);
+        distance = Math.abs(distance);
+
+        //Too short to reach maxVelocity: speed up half way and slow down the other half
+        double peakVelocity = Math.min(maxVelocity, Math.sqrt(distance * maxAcceleration));
+        double accelTime = peakVelocity / maxAcceleration;
+        double cruiseTime = peakVelocity > 0 ? (distance - peakVelocity * accelTime) / peakVelocity : 0;
+        double totalTime = 2 * accelTime + cruiseTime;
+
+        int samples = (int) Math.ceil(totalTime / dt) + 1;
+        double[] positions = new double[samples];
+        double[] velocities = new double[samples];
+
+        for (int i = 0; i < samples; i++) {
+            double t = Math.min(i * dt, totalTime);
+            double position, velocity;
+
+            if (t < accelTime) {
+                velocity = maxAcceleration * t;
+                position = 0.5 * maxAcceleration * t * t;
+            } else if (t < accelTime + cruiseTime) {
+                velocity = peakVelocity;
+                position = 0.5 * peakVelocity * accelTime + peakVelocity * (t - accelTime);
+            } else {
+                double left = totalTime - t;
+                velocity = maxAcceleration * left;
+                position = distance - 0.5 * maxAcceleration * left * left;
+            }
+
+            positions[i] = sign * position;
+            velocities[i] = sign * velocity;
+        }
+
+        return new MotionProfile(dt, positions, velocities);
+    }
+
+    /**
+     * @param distance        - How far to move (may be negative).
+     * @param maxVelocity     - The fastest to move (> 0).
+     * @param maxAcceleration - The fastest to speed up or slow down (> 0).
+     * @param maxJerk         - The fastest the acceleration may change (> 0).
+     * @return MotionProfile - An S-curve profile sampled every DEFAULT_DT seconds.
+     */
+    public static MotionProfile sCurve(double distance, double maxVelocity, double maxAcceleration, double maxJerk) {
+        return sCurve(distance, maxVelocity, maxAcceleration, maxJerk, DEFAULT_DT);
+    }
+
+    /**
+     * @param distance        - How far to move (may be negative).
+     * @param maxVelocity     - The fastest to move (> 0).
+     * @param maxAcceleration - The fastest to speed up or slow down (> 0).
+     * @param maxJerk         - The fastest the acceleration may change (> 0).
+     * @param dt              - The time between samples (s).
+     * @return MotionProfile - An S-curve profile.
+     */
+    public static MotionProfile sCurve(double distance, double maxVelocity, double maxAcceleration, double maxJerk, double dt) {
+        if (!(maxJerk > 0)) {
+            throw new IllegalArgumentException("The jerk limit must be positive, not " + maxJerk);
+        }
+
+        MotionProfile trapezoid = trapezoidal(distance, maxVelocity, maxAcceleration, dt);
+
+        //Averaging over the time it takes to reach maxAcceleration keeps the jerk under maxJerk. If
+        //the trapezoid cruises for less than that, the acceleration flips from speeding up to
+        //slowing down within one window, which takes twice the time to smooth
+        double jerkTime = maxAcceleration / maxJerk;
+        double peakVelocity = Math.min(maxVelocity, Math.sqrt(Math.abs(distance) * maxAcceleration));
+        double cruiseTime = peakVelocity > 0 ? Math.abs(distance) / peakVelocity - peakVelocity / maxAcceleration : 0;
+
+        if (cruiseTime < jerkTime) {
+            jerkTime *= 2;
+        }
+
+        int window = (int) Math.ceil(jerkTime / dt);
+        if (window <= 1 || distance == 0) { return trapezoid; }
+
+        double[] positions = movingAverage(trapezoid.positions, window);
+        double[] velocities = movingAverage(trapezoid.velocities, window);
+
+        return new MotionProfile(dt, positions, velocities);
+    }
+
+    /**
+     * Average every sample with the window - 1 samples before it. The array is taken to hold its
+     * first value before it starts and its last value after it ends, so the result is window - 1
+     * samples longer and ends on the same value.
+     */
+    private static double[] movingAverage(double[] samples, int window) {
+        int length = samples.length + window - 1;
+        double[] averaged = new double[length];
+        double sum = samples[0] * window;
+
+        for (int i = 0; i < length; i++) {
+            double entering = samples[Math.min(i, samples.length - 1)];
+            double leaving = i - window < 0 ? samples[0] : samples[Math.min(i - window, samples.length - 1)];
+
+            sum += entering - leaving;
+            averaged[i] = sum / window;
+        }
+
+        //Rounding in the running sum must not leave the move short of its distance
+        averaged[length - 1] = samples[samples.length - 1];
+
+        return averaged;
+    }
+
+    private static void checkLimits(double maxVelocity, double maxAcceleration, double dt) {
+        if (!(maxVelocity > 0) || !(maxAcceleration > 0) || !(dt > 0)) {
+            throw new IllegalArgumentException("The velocity and acceleration limits and dt must be positive");
+        }
+    }
+
+    /** @return double - The length of the move (s). */
+    public double getDuration() { return (positions.length - 1) * dt; }
+
+    /** @return double - How far the move goes. */
+    public double getDistance() { return positions[positions.length - 1]; }
+
+    public double getDt() { return dt; }
+    public int size() { return positions.length; }
+
+    /** @return double - Where the robot should be t seconds into the move. */
+    public double positionAt(double t) { return sample(positions, t); }
+
+    /** @return double - How fast the robot should be going t seconds into the move. */
+    public double velocityAt(double t) { return sample(velocities, t); }
+
+    /** Linearly interpolate between the two samples around time t, holding the ends. */
+    private double sample(double[] samples, double t) {
+        if (t <= 0) { return samples[0]; }
+
+        double index = t / dt;
+        int i = (int) index;
+
+        if (i >= samples.length - 1) { return samples[samples.length - 1]; }
+
+        double fraction = index - i;
+        return samples[i] + (samples[i + 1] - samples[i]) * fraction;
+    }
+}
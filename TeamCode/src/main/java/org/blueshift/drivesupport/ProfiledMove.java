@@ -0,0 +1,66 @@
+package org.blueshift.drivesupport;
+
+import com.qualcomm.robotcore.util.Range;
+
+/**
+ * An encoder move that follows a {@link MotionProfile} instead of running to its target at a fixed
+ * power. Every poll the motors are given the power that should hold the profile's velocity (its
+ * velocity over the velocity of the motors at full power), plus a correction for how far the robot
+ * is behind or ahead of the profile's position. The move is finished once the profile is over and
+ * the robot is within TOLERANCE of the end, or SETTLE_MS after the profile is over.
+ *
+ * Each drive (see TankDrive and MecanumDrive) says how its position along the move is measured and
+ * how a power is sent to its motors.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public abstract class ProfiledMove extends EncoderMove {
+    //Power added for every tick the robot is behind the profile, and how close to the end is done
+    public static final double KP = 0.002;
+    public static final double TOLERANCE = 15;
+
+    //The longest to wait for the robot to reach the end once the profile is over
+    public static final long SETTLE_MS = 300;
+
+    private final MotionProfile profile;
+    private final double fullPowerVelocity;
+
+    private double error = 0;
+
+    /**
+     * @param profile           - The profile to follow, in encoder ticks.
+     * @param fullPowerVelocity - How fast the robot moves at full power (ticks/s).
+     * @param timeoutMs         - The longest the move may take, in milliseconds.
+     */
+    protected ProfiledMove(MotionProfile profile, double fullPowerVelocity, long timeoutMs) {
+        super(timeoutMs);
+        this.profile = profile;
+        this.fullPowerVelocity = fullPowerVelocity;
+    }
+
+    /** @return double - How far the robot has moved along the move (ticks). */
+    protected abstract double getPosition();
+
+    /** @param power - [-1, 1], The power to drive along the move at. */
+    protected abstract void setPower(double power);
+
+    @Override
+    protected boolean poll(long elapsedMs) {
+        double t = elapsedMs / 1000.0;
+        error = profile.positionAt(t) - getPosition();
+
+        if (t >= profile.getDuration() && (Math.abs(error) <= TOLERANCE || elapsedMs >= profile.getDuration() * 1000 + SETTLE_MS)) {
+            return true;
+        }
+
+        setPower(Range.clip(profile.velocityAt(t) / fullPowerVelocity + KP * error, -1, 1));
+        return false;
+    }
+
+    /** @return double - How far (ticks) the robot was behind the profile when last checked. */
+    public double getError() { return error; }
+
+    public MotionProfile getProfile() { return profile; }
+}
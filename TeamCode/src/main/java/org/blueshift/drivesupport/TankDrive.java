@@ -2,7 +2,6 @@ package org.blueshift.drivesupport;
 
 import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DcMotorSimple;
-import com.qualcomm.robotcore.util.ElapsedTime;
 
 import org.firstinspires.ftc.robotcore.external.Telemetry;
 
@@ -14,7 +13,7 @@ import org.firstinspires.ftc.robotcore.external.Telemetry;
  * tank drive in practice. This is far more precise when using an autonomous program.
  *
  * @author Gabriel Wong
- * @version 1.0
+ * @version 1.1
  */
 
 public class TankDrive {
@@ -22,7 +21,15 @@ public class TankDrive {
     private double[] motorPowers = {0.0, 0.0, 0.0, 0.0};
     private Telemetry telemetry;
 
-    static ElapsedTime elapsedTime;
+    //The encoder move in progress (see startEncoderMove()), and how long a move may take by default
+    private EncoderMove currentMove;
+    public static final long DEFAULT_ENCODER_TIMEOUT_MS = 6250;
+
+    //How fast the encoders count at full power, and the limits of profiled moves (ticks, seconds)
+    public static final double FULL_POWER_TICKS_PER_SECOND = 2800;
+    public static final double PROFILE_MAX_VELOCITY = 2200;
+    public static final double PROFILE_MAX_ACCELERATION = 3000;
+    public static final double PROFILE_MAX_JERK = 20000;
 
     private int iLeftBack = 0, iLeftFront = 1, iRightBack = 2, iRightFront = 3;
 
@@ -103,14 +110,115 @@ public class TankDrive {
     }
 
     /**
-     * An extension of the drive(...) method that uses encoders and drives certain distances.
+     * An extension of the drive(...) method that uses encoders and drives certain distances. Waits
+     * for the move to finish (see {@link EncoderMove}), but ends it early if the OpMode is stopped.
      *
      * @param dSpeed        - [-1, 1], The desired speed for the robot to travel at.
      * @param encoderTarget - The values the encoders should be equal to before stopping the robot.
      */
     public void driveWithEncoders(double dSpeed, int encoderTarget) {
-        elapsedTime = new ElapsedTime();
-        elapsedTime.reset();
+        driveWithEncoders(dSpeed, encoderTarget, DEFAULT_ENCODER_TIMEOUT_MS);
+    }
+
+    /**
+     * An extension of the drive(...) method that uses encoders and drives certain distances. Waits
+     * for the move to finish (see {@link EncoderMove}), but ends it early if the OpMode is stopped.
+     *
+     * @param dSpeed        - [-1, 1], The desired speed for the robot to travel at.
+     * @param encoderTarget - The values the encoders should be equal to before stopping the robot.
+     * @param timeoutMs     - The longest the move may take, in milliseconds.
+     */
+    public void driveWithEncoders(double dSpeed, int encoderTarget, long timeoutMs) {
+        startEncoderMove(dSpeed, encoderTarget, timeoutMs).await();
+    }
+
+    /**
+     * Drive a certain distance along an S-curve motion profile (see {@link MotionProfile}) under
+     * the PROFILE_MAX_* limits, so the robot speeds up and slows down smoothly and does not
+     * overshoot. Waits for the move to finish, but ends it early if the OpMode is stopped.
+     *
+     * @param encoderTarget - The values the encoders should be equal to before stopping the robot.
+     */
+    public void driveWithProfile(int encoderTarget) {
+        startProfiledMove(encoderTarget, DEFAULT_ENCODER_TIMEOUT_MS).await();
+    }
+
+    /**
+     * Start driving a certain distance along an S-curve motion profile under the PROFILE_MAX_*
+     * limits and return right away (see {@link ProfiledMove}).
+     *
+     * @param encoderTarget - The values the encoders should be equal to before stopping the robot.
+     * @param timeoutMs     - The longest the move may take, in milliseconds.
+     * @return ProfiledMove - The running move.
+     */
+    public ProfiledMove startProfiledMove(int encoderTarget, long timeoutMs) {
+        return startProfiledMove(MotionProfile.sCurve(encoderTarget, PROFILE_MAX_VELOCITY,
+                PROFILE_MAX_ACCELERATION, PROFILE_MAX_JERK), timeoutMs);
+    }
+
+    /**
+     * Start following a motion profile (in encoder ticks) and return right away. Starting a new move
+     * cancels the one before it.
+     *
+     * @param profile   - The profile to follow.
+     * @param timeoutMs - The longest the move may take, in milliseconds.
+     * @return ProfiledMove - The running move.
+     */
+    public ProfiledMove startProfiledMove(MotionProfile profile, long timeoutMs) {
+        if (currentMove != null) {
+            currentMove.cancel();
+        }
+
+        useEncoders();
+
+        ProfiledMove move = new ProfiledMove(profile, FULL_POWER_TICKS_PER_SECOND, timeoutMs) {
+            @Override
+            protected double getPosition() {
+                //The same signs as the targets in startEncoderMove()
+                return (motors[iLeftFront].getCurrentPosition() + motors[iRightBack].getCurrentPosition()
+                        - motors[iRightFront].getCurrentPosition() - motors[iLeftBack].getCurrentPosition()) / 4.0;
+            }
+
+            @Override
+            protected void setPower(double power) { driveStraight(power); }
+
+            @Override
+            protected void end() {
+                stop();
+                dontUseEncoders();
+            }
+        };
+
+        currentMove = move;
+        return move;
+    }
+
+    /** Give every motor the same power, with the signs drive(dSpeed, 0) would use. */
+    private void driveStraight(double power) {
+        motorPowers[iLeftBack] = -power;
+        motorPowers[iLeftFront] = power;
+        motorPowers[iRightBack] = power;
+        motorPowers[iRightFront] = -power;
+
+        for (int i = 0; i < motors.length; i++) {
+            motors[i].setPower(motorPowers[i]);
+        }
+    }
+
+    /**
+     * Start driving a certain distance with the encoders and return right away. The move has to be
+     * checked on with update() until it is finished (see {@link EncoderMove}). Starting a new move
+     * cancels the one before it.
+     *
+     * @param dSpeed        - [-1, 1], The desired speed for the robot to travel at.
+     * @param encoderTarget - The values the encoders should be equal to before stopping the robot.
+     * @param timeoutMs     - The longest the move may take, in milliseconds.
+     * @return EncoderMove - The running move.
+     */
+    public EncoderMove startEncoderMove(double dSpeed, int encoderTarget, long timeoutMs) {
+        if (currentMove != null) {
+            currentMove.cancel();
+        }
 
         useEncoders();
 
@@ -123,19 +231,18 @@ public class TankDrive {
         useRunToPosition();
         drive(dSpeed, 0);
 
-        boolean running = true;
+        currentMove = new EncoderMove(timeoutMs) {
+            @Override
+            protected boolean poll(long elapsedMs) { return !isBusy(); }
 
-        while(running) {
-            if (!isBusy()) {
-                running = false;
-            } else if (elapsedTime.milliseconds() > 6250) {
-                running = false;
+            @Override
+            protected void end() {
+                stop();
+                dontUseEncoders();
             }
-        }
+        };
 
-        elapsedTime = null;
-        stop();
-        dontUseEncoders();
+        return currentMove;
     }
 
     /**
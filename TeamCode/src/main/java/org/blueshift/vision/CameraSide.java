@@ -1,17 +0,0 @@
-package org.blueshift.vision;
-
-/**
- *
- *
- */
-
-public enum CameraSide {
-    LEFT,
-    RIGHT,
-    BOTTOMLEFT,
-    BOTTOMRIGHT,
-    BOTTOMLEFTLEFT,
-    BOTTOMLEFTRIGHT,
-    BOTTOMRIGHTLEFT,
-    BOTTOMRIGHTRIGHT
-}
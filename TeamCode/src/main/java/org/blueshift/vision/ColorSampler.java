@@ -0,0 +1,168 @@
+package org.blueshift.vision;
+
+import com.qualcomm.hardware.ams.AMSColorSensor;
+import com.qualcomm.robotcore.hardware.ColorSensor;
+
+/**
+ * Reads all four channels (alpha, red, green and blue) of a color sensor at once. On the REV color
+ * sensor (an AMS sensor) the four channels sit next to each other in the sensor's registers, so they
+ * are fetched (along with the status register) in a single 9 byte burst: one I2C round trip per sample instead of one per channel.
+ * Other sensors fall back to reading each channel on its own.
+ *
+ * Samples are kept in a reused int array. The sampler can also poll the sensor on a background
+ * thread at a fixed rate, so that the newest sample is always ready without waiting on the bus.
+ *
+ * The sensor only finishes a new measurement once every INTEGRATION_TIME_MS. A burst read is far
+ * quicker than that, so reading more often just returns the same measurement again; callers that
+ * filter samples should space them at least INTEGRATION_TIME_MS apart.
+ *
+ * @author Gabriel Wong
+ * @version 1.1
+ */
+
+public class ColorSampler implements Runnable {
+    //Where each channel is kept in a sample
+    public static final int ALPHA = 0, RED = 1, GREEN = 2, BLUE = 3;
+    public static final int CHANNELS = 4;
+
+    //How long the sensor takes to measure (the SDK's default integration time for AMS sensors)
+    public static final long INTEGRATION_TIME_MS = 24;
+
+    //The bit of the AMS STATUS register that is set once the channels hold a measurement
+    private static final int STATUS_VALID = 0x01;
+
+    private final ColorSensor colorSensor;
+    private final AMSColorSensor burstSensor;
+
+    private final int[] sample = new int[CHANNELS];
+    private long sampleTime = 0;
+    private int sampleCount = 0;
+
+    private Thread pollingThread;
+    private volatile boolean polling = false;
+    private volatile long pollPeriodMs;
+
+    /**
+     * @param colorSensor - The color sensor to sample.
+     */
+    public ColorSampler(ColorSensor colorSensor) {
+        this.colorSensor = colorSensor;
+        this.burstSensor = colorSensor instanceof AMSColorSensor ? (AMSColorSensor) colorSensor : null;
+    }
+
+    /**
+     * Read every channel from the sensor now.
+     *
+     * @return int[] - The new sample, indexed by ALPHA, RED, GREEN and BLUE. The array is reused by
+     * the next sample, so copy anything that has to be kept.
+     */
+    public synchronized int[] sample() {
+        if (burstSensor != null) {
+            //STATUS is followed by ALPHA, RED, GREEN and BLUE: 16 bit little endian registers, one
+            //after the other
+            byte[] data = burstSensor.read(AMSColorSensor.Register.STATUS, 1 + 2 * CHANNELS);
+
+            //Keep the last sample if the sensor has not finished its first measurement yet
+            if ((data[0] & STATUS_VALID) == 0) {
+                return sample;
+            }
+
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                sample[channel] = (data[1 + 2 * channel] & 0xff) | (data[2 + 2 * channel] & 0xff) << 8;
+            }
+        } else {
+            sample[ALPHA] = colorSensor.alpha();
+            sample[RED] = colorSensor.red();
+            sample[GREEN] = colorSensor.green();
+            sample[BLUE] = colorSensor.blue();
+        }
+
+        sampleTime = System.nanoTime() / 1000000;
+        sampleCount++;
+
+        return sample;
+    }
+
+    /**
+     * Copy the newest sample without reading the sensor (use with startPolling()).
+     *
+     * @param into - An array of at least CHANNELS ints to copy the sample into.
+     * @return long - The time the sample was read, in milliseconds of System.nanoTime(), or 0 if
+     * nothing has been sampled yet.
+     */
+    public synchronized long latest(int[] into) {
+        System.arraycopy(sample, 0, into, 0, CHANNELS);
+        return sampleTime;
+    }
+
+    /** @return int - How many samples have been read so far. */
+    public synchronized int getSampleCount() { return sampleCount; }
+
+    /**
+     * Sample the sensor on a background thread every periodMs milliseconds. Does nothing but
+     * change the period if it is already polling.
+     *
+     * @param periodMs - The time between samples, in milliseconds. Never less than
+     *                 INTEGRATION_TIME_MS, so that every sample is a new measurement.
+     */
+    public synchronized void startPolling(long periodMs) {
+        pollPeriodMs = Math.max(periodMs, INTEGRATION_TIME_MS);
+        if (polling) { return; }
+
+        polling = true;
+        pollingThread = new Thread(this, "ColorSampler");
+        pollingThread.setDaemon(true);
+        pollingThread.start();
+    }
+
+    /** Stop polling the sensor and wait for the polling thread to finish. */
+    public void stopPolling() {
+        Thread thread;
+
+        synchronized (this) {
+            polling = false;
+            thread = pollingThread;
+            pollingThread = null;
+        }
+
+        if (thread != null) {
+            thread.interrupt();
+
+            try {
+                thread.join(pollPeriodMs * 2 + 100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isPolling() { return polling; }
+
+    @Override
+    public void run() {
+        //Samples are scheduled from a fixed start so that slow reads do not make the rate drift
+        long nextSample = System.nanoTime() / 1000000;
+
+        while (polling) {
+            try {
+                sample();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            nextSample += pollPeriodMs;
+            long wait = nextSample - System.nanoTime() / 1000000;
+
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            } else {
+                //Running behind; skip the missed samples rather than rushing to catch up
+                nextSample = System.nanoTime() / 1000000;
+            }
+        }
+    }
+}
@@ -6,6 +6,9 @@ import android.view.View;
 import com.qualcomm.robotcore.hardware.ColorSensor;
 import org.blueshift.vision.JewelState;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Class for the Color Sensor meant for sensing Jewels (red or blue). When constructed, this class
  * will use the color sensor's color value output and convert it to HSV values for easier use when
@@ -14,24 +17,58 @@ import org.blueshift.vision.JewelState;
  * {@link org.blueshift.vision.JewelState}
  *
  * @author Gabriel Wong
- * @version 0.2 ALPHA
+ * @version 0.6 ALPHA
  */
 
-public class JewelSense_ColorSensor {
+public class JewelSense_ColorSensor implements JewelDetector {
     ColorSensor colorSensor;
+    private final ColorSampler sampler;
+    private final int[] reading = new int[ColorSampler.CHANNELS];
+    private final JewelColorFilter filter = new JewelColorFilter();
+
+    //How the last (or current) awaitJewel() stands; read from other threads by FusionJewelDetector
+    private volatile JewelState lastJewel = JewelState.UNKNOWN;
+    private volatile double lastConfidence = 0;
+
+    //Whether the jewel arm holds the sensor over the jewel nearer the top of the camera
+    private boolean overTopJewel = true;
 
     private float rgbValues[] = {0, 0, 0};
     private float hsvValues[] = {0F, 0F, 0F};
     private final float values[] = hsvValues;
     private final double SCALE_FACTOR = 255;
 
+    //How many times stronger one color must be than the other, and the least red + blue to trust
+    private static final float DOMINANCE_RATIO = 1.5f;
+    private static final float MIN_SIGNAL = 10;
+
     private View relativeLayout;
 
+    //The screen is redrawn at most this often, however often showColor() is called
+    private static final long PREVIEW_PERIOD_MS = 50;
+
+    //The newest color to show, whether a redraw is already waiting on the UI thread, and when the
+    //last redraw happened (System.nanoTime() in milliseconds)
+    private final AtomicInteger previewColor = new AtomicInteger();
+    private final AtomicBoolean previewPosted = new AtomicBoolean(false);
+    private volatile long lastPreviewTime = 0;
+
+    //The one redraw that is ever posted to the UI thread. It draws whatever color is newest when it runs
+    private final Runnable previewUpdater = new Runnable() {
+        public void run() {
+            //Let the next showColor() post again before reading the color, so no color is missed
+            previewPosted.set(false);
+            lastPreviewTime = System.nanoTime() / 1000000;
+            relativeLayout.setBackgroundColor(previewColor.get());
+        }
+    };
+
     /**
      * @param colorSensor - the color sensor to be used with these functions.
      */
     public JewelSense_ColorSensor(ColorSensor colorSensor) {
         this.colorSensor = colorSensor;
+        this.sampler = new ColorSampler(colorSensor);
         enableLed(true);
     }
 
@@ -45,6 +82,7 @@ public class JewelSense_ColorSensor {
      */
     public JewelSense_ColorSensor(ColorSensor colorSensor, View relativeLayout) {
         this.colorSensor = colorSensor;
+        this.sampler = new ColorSampler(colorSensor);
         this.relativeLayout = relativeLayout;
         enableLed(true);
     }
@@ -56,54 +94,172 @@ public class JewelSense_ColorSensor {
      */
     public void enableLed(boolean state) { colorSensor.enableLed(state); }
 
-    /** Update the array tables that hold the HSV color values with a modified RGB table. */
+    /**
+     * Update the array tables that hold the RGB and HSV color values from a single sample of the
+     * sensor (see {@link ColorSampler}). When the sampler is polling in the background its newest
+     * sample is used instead of reading the sensor again.
+     */
     private void readColors() {
-        rgbValues[0] = colorSensor.red();
-        rgbValues[1] = colorSensor.green();
-        rgbValues[2] = colorSensor.blue();
+        if (!sampler.isPolling()) {
+            sampler.sample();
+        }
+        sampler.latest(reading);
+
+        rgbValues[0] = reading[ColorSampler.RED];
+        rgbValues[1] = reading[ColorSampler.GREEN];
+        rgbValues[2] = reading[ColorSampler.BLUE];
 
-        Color.RGBToHSV((int) (colorSensor.red() * SCALE_FACTOR),
-                (int) (colorSensor.green() * SCALE_FACTOR),
-                (int) (colorSensor.blue() * SCALE_FACTOR),
+        Color.RGBToHSV((int) (rgbValues[0] * SCALE_FACTOR),
+                (int) (rgbValues[1] * SCALE_FACTOR),
+                (int) (rgbValues[2] * SCALE_FACTOR),
                 hsvValues);
     }
 
-    public int getRed() {
-        return colorSensor.red();
-    }
+    /**
+     * Keep sampling the sensor in the background, so that readings never wait on the I2C bus.
+     *
+     * @param periodMs - The time between samples, in milliseconds.
+     */
+    public void startPolling(long periodMs) { sampler.startPolling(periodMs); }
 
-    public int getGreen() {
-        return colorSensor.green();
-    }
+    public void stopPolling() { sampler.stopPolling(); }
 
-    public int getBlue() {
-        return colorSensor.blue();
-    }
+    //The channels of the last reading (see readColors()); they do not read the sensor again
+    public int getRed() { return reading[ColorSampler.RED]; }
+    public int getGreen() { return reading[ColorSampler.GREEN]; }
+    public int getBlue() { return reading[ColorSampler.BLUE]; }
+    public int getAlpha() { return reading[ColorSampler.ALPHA]; }
 
-    /** Display the viewed color on the robot controller. */
+    /**
+     * Display the viewed color on the robot controller. Calls that come faster than the screen is
+     * redrawn (every PREVIEW_PERIOD_MS) only change the color that the next redraw shows, so the UI
+     * thread never gets more than one redraw queued up.
+     */
     public void showColor() {
         readColors();
-        relativeLayout.post(new Runnable() {
-            public void run() {
-                relativeLayout.setBackgroundColor(Color.HSVToColor(0xff, values));
-            }
-        });
+        previewColor.set(Color.HSVToColor(0xff, values));
+
+        //A redraw is already on its way and will pick up the new color
+        if (!previewPosted.compareAndSet(false, true)) { return; }
+
+        long wait = lastPreviewTime + PREVIEW_PERIOD_MS - System.nanoTime() / 1000000;
+        relativeLayout.postDelayed(previewUpdater, Math.max(0, wait));
     }
 
     /**
      * Update the colors with the readColors() method and then compare the outputs with eachother to
-     * find whether the robot is looking at a red or blue jewel.
+     * find whether the robot is looking at a red or blue jewel. Red and blue are compared to each
+     * other rather than to fixed values, so a brighter or dimmer venue (which scales both) does not
+     * change the answer.
      *
      * @return JewelState - the jewel the robot is looking at.
      */
     public JewelState lookingAt() {
         readColors();
-        if (rgbValues[0] > 38 && rgbValues[2] <= 38) {
+
+        //Too little light reflected back to tell the colors apart
+        if (rgbValues[0] + rgbValues[2] < MIN_SIGNAL) {
+            return JewelState.UNKNOWN;
+        }
+
+        if (rgbValues[0] > rgbValues[2] * DOMINANCE_RATIO) {
             return JewelState.RED;
-        } else if (rgbValues[0] < 17 && rgbValues[2] >= 17) {
+        } else if (rgbValues[2] > rgbValues[0] * DOMINANCE_RATIO) {
             return JewelState.BLUE;
         } else {
             return JewelState.UNKNOWN;
         }
     }
+
+    /**
+     * Keep reading the sensor until the filtered reading is sure of the jewel (see
+     * {@link JewelColorFilter}), or until the deadline passes. This lets an autonomous program lower
+     * the arm and move on as soon as the reading is steady instead of sleeping for a fixed time.
+     * Only new measurements are filtered: when the sampler is polling in the background only its new
+     * samples are used, and otherwise the sensor is read once per integration period (see
+     * ColorSampler.INTEGRATION_TIME_MS), since reading it faster just repeats the same measurement.
+     *
+     * @param confidence - [0, 1], The confidence needed before returning.
+     * @param deadline   - The longest time to read for, in milliseconds.
+     * @return JewelState - The filtered jewel when the search ended; check getConfidence() to see
+     * whether it is sure of it.
+     */
+    public JewelState awaitJewel(float confidence, int deadline) {
+        long endTime = System.nanoTime() / 1000000 + deadline;
+        //Only samples read after the search starts count
+        long lastSampleTime = sampler.latest(reading);
+
+        filter.reset();
+        reset();
+
+        while (!filter.isConfident(confidence) && System.nanoTime() / 1000000 < endTime && !Thread.currentThread().isInterrupted()) {
+            //The sensor has had time to finish a new measurement since the last read
+            if (!sampler.isPolling() && System.nanoTime() / 1000000 - lastSampleTime >= ColorSampler.INTEGRATION_TIME_MS) {
+                sampler.sample();
+            }
+
+            long sampleTime = sampler.latest(reading);
+
+            //Nothing new since the last sample; wait for the polling thread or the next measurement
+            if (sampleTime == lastSampleTime) {
+                long wait = sampler.isPolling() ? 1 : lastSampleTime + ColorSampler.INTEGRATION_TIME_MS - System.nanoTime() / 1000000;
+
+                try {
+                    Thread.sleep(Math.max(1, wait));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                continue;
+            }
+
+            lastSampleTime = sampleTime;
+
+            filter.add(reading[ColorSampler.RED], reading[ColorSampler.BLUE]);
+
+            lastJewel = filter.getJewel();
+            lastConfidence = filter.getConfidence();
+        }
+
+        return lastJewel;
+    }
+
+    /**
+     * Tell which jewel the sensor sits over once the jewel arm is lowered, so that findJewel() can
+     * report the jewel nearer the top of the camera like every other {@link JewelDetector}.
+     *
+     * @param overTopJewel - True if the sensor reads the jewel nearer the top of the camera, false if
+     *                     it reads the other one.
+     */
+    public void setOverTopJewel(boolean overTopJewel) { this.overTopJewel = overTopJewel; }
+
+    /**
+     * The same as awaitJewel() (with the jewel arm already lowered), but reporting the jewel nearer
+     * the top of the camera: the other color when the sensor sits over the other jewel.
+     */
+    @Override
+    public JewelState findJewel(double confidence, int deadline) {
+        awaitJewel((float) confidence, deadline);
+        return getJewel();
+    }
+
+    @Override
+    public JewelState getJewel() {
+        JewelState jewel = lastJewel;
+
+        if (overTopJewel || jewel == JewelState.UNKNOWN) {
+            return jewel;
+        }
+
+        return jewel == JewelState.RED ? JewelState.BLUE : JewelState.RED;
+    }
+
+    /** @return double - [0, 1], How sure the last (or current) awaitJewel() is of its jewel. */
+    @Override
+    public double getConfidence() { return lastConfidence; }
+
+    @Override
+    public void reset() {
+        lastJewel = JewelState.UNKNOWN;
+        lastConfidence = 0;
+    }
 }
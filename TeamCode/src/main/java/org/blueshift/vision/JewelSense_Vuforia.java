@@ -1,7 +1,5 @@
 package org.blueshift.vision;
 
-import android.graphics.Bitmap;
-import android.graphics.Color;
 import android.support.annotation.Nullable;
 
 import com.vuforia.CameraDevice;
@@ -10,7 +8,6 @@ import com.vuforia.Image;
 import com.vuforia.PIXEL_FORMAT;
 import com.vuforia.Vuforia;
 
-import org.firstinspires.ftc.robotcore.external.ClassFactory;
 import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer;
 import org.firstinspires.ftc.teamcode.R;
 
@@ -24,44 +21,51 @@ import java.nio.ByteBuffer;
  */
 
 public class JewelSense_Vuforia {
-    private String vuforiaLicenseKey = "AQfdha3/////AAAAGZL0n1bAsE6PhPRk2ZsrU28GbeRb+R9mOTvsv5dv8xLA+Fi/2ZqLOjcq93npWWM6jcqlyPmp76pka6/mCQEqGXEWZ2hHSaTOB8/XSgSao69oTendDtVCQjMY0ewFVhgXlg63pNtHIbq1OTchsAiuyfPIaTWs3Mii/JTqZEpNdlCSS1mshiYXH2fxUwmC/U5onbwMr3VNejuJS60rYacIzSkeYIRbMeeYNhxfJej4nNxrVPkCKcgkw10CHeKlnNLD9LuzSB6u/5dl1mSXsDh4P8gj02JjVYtWmEqvVRWC744RK97jA3KEemN9ALm6owsXtrCVN1CWnkOdlPJWFGlGZILEx7rxb9/st5hqUweC8iLs";
+    private final VuforiaSession.Lease lease;
     private VuforiaLocalizer vuforia;
 
-    public JewelSense_Vuforia(int cameraMonitorViewId) {
-        VuforiaLocalizer.Parameters params = new VuforiaLocalizer.Parameters(cameraMonitorViewId);
-        params.vuforiaLicenseKey = vuforiaLicenseKey;
-        params.cameraDirection = VuforiaLocalizer.CameraDirection.FRONT;
-
-        vuforia = ClassFactory.createVuforiaLocalizer(params);
-
-        Vuforia.setFrameFormat(PIXEL_FORMAT.RGB565, true); //enables RGB565 format for the image
+    private final Rgb565Reader frameReader = new Rgb565Reader();
+    private VuforiaLocalizer.CloseableFrame currentFrame;
 
-        vuforia.setFrameQueueCapacity(1); //tells VuforiaLocalizer to only store one frame at a time
+    public JewelSense_Vuforia(int cameraMonitorViewId) {
+        //Started once and shared between OpModes (See VuforiaSession)
+        this(VuforiaSession.acquire(cameraMonitorViewId, VuforiaLocalizer.CameraDirection.FRONT));
     }
 
     public JewelSense_Vuforia() {
-        VuforiaLocalizer.Parameters params = new VuforiaLocalizer.Parameters();
-        params.vuforiaLicenseKey = vuforiaLicenseKey;
-        params.cameraDirection = VuforiaLocalizer.CameraDirection.BACK;
+        //Uses the BACK camera. If the shared session is running with the FRONT camera (See
+        //VuforiaTracker) it is restarted, or refused while another OpMode object holds it
+        this(VuforiaSession.acquire(VuforiaLocalizer.CameraDirection.BACK));
+    }
 
-        vuforia = ClassFactory.createVuforiaLocalizer(params);
+    private JewelSense_Vuforia(VuforiaSession.Lease lease) {
+        this.lease = lease;
+        vuforia = lease.getVuforia();
 
         Vuforia.setFrameFormat(PIXEL_FORMAT.RGB565, true); //enables RGB565 format for the image
 
         vuforia.setFrameQueueCapacity(1); //tells VuforiaLocalizer to only store one frame at a time
     }
 
+    /**
+     * Give Vuforia back to the {@link VuforiaSession}. Vuforia keeps running for the next OpMode.
+     */
+    public void close() {
+        closeFrame();
+        lease.release();
+    }
+
     private Image getImage() {
         Image rgb = null;
 
         try {
-            VuforiaLocalizer.CloseableFrame frame = vuforia.getFrameQueue().take();
+            currentFrame = vuforia.getFrameQueue().take();
 
-            long numImages = frame.getNumImages();
+            long numImages = currentFrame.getNumImages();
 
             for (int i = 0; i < numImages; i++) {
-                if (frame.getImage(i).getFormat() == PIXEL_FORMAT.RGB565) {
-                    rgb = frame.getImage(i);
+                if (currentFrame.getImage(i).getFormat() == PIXEL_FORMAT.RGB565) {
+                    rgb = currentFrame.getImage(i);
                     break;
                 }
             }
@@ -72,129 +76,58 @@ public class JewelSense_Vuforia {
         return rgb;
     }
 
-    private Bitmap processImage(Image rgb) {
-        Bitmap bitmap = Bitmap.createBitmap(rgb.getWidth(), rgb.getHeight(), Bitmap.Config.RGB_565);
-        bitmap.copyPixelsFromBuffer(rgb.getPixels());
-
-        return bitmap;
+    private void closeFrame() {
+        if (currentFrame != null) {
+            currentFrame.close();
+            currentFrame = null;
+        }
     }
 
     //LEFT = The Top Side of the Phone
-    private int countPixels(CameraSide side, RGBColor colorOption) {
-        Bitmap bitmap = processImage(getImage());
-
-        int redCount = 0, blueCount = 0;
-
-        int pixel, redValue, blueValue, greenValue;
-
-        if (side == CameraSide.LEFT) {
-            for (int x = 0; x < bitmap.getWidth() / 2; x += 2) {
-                for (int y = 0; y < bitmap.getHeight(); y += 2) {
-                    pixel = bitmap.getPixel(x, y);
+    private static final FrameRegion BOTTOMLEFTLEFT = new FrameRegion("BOTTOMLEFTLEFT", 0.0, 0.25, 0.0, 0.5);
+    private static final FrameRegion BOTTOMLEFTRIGHT = new FrameRegion("BOTTOMLEFTRIGHT", 0.25, 0.5, 0.0, 0.5);
+
+    private final JewelClassifier fullClassifier = new JewelClassifier(CameraSide.LEFT, CameraSide.RIGHT);
+    private final JewelClassifier bottomLeftClassifier = new JewelClassifier(JewelClassifier.DEFAULT_STEP, BOTTOMLEFTLEFT, BOTTOMLEFTRIGHT);
+
+    /**
+     * Count the pixels of every region of the classifier in a single frame.
+     *
+     * @param classifier - The classifier holding the regions to count.
+     * @return PixelCounts - The red and blue counts of each region, or null if no frame could be grabbed.
+     */
+    private PixelCounts countPixels(JewelClassifier classifier) {
+        try {
+            Image rgb = getImage();
 
-                    redValue = Color.red(pixel);
-                    blueValue = Color.blue(pixel);
-                    greenValue = Color.green(pixel);
+            //Return null if there is no frame to look at
+            if (rgb == null) { return null; }
 
-                    if (redValue > blueValue && redValue > greenValue) {
-                        redCount++;
-                    } else if (blueValue > redValue && blueValue > greenValue) {
-                        blueCount++;
-                    }
-                }
-            }
-        } else if (side == CameraSide.RIGHT){
-            for (int x = bitmap.getWidth() / 2; x < bitmap.getWidth(); x += 2) {
-                for (int y = 0; y < bitmap.getHeight(); y += 2) {
-                    pixel = bitmap.getPixel(x, y);
-
-                    redValue = Color.red(pixel);
-                    blueValue = Color.blue(pixel);
-                    greenValue = Color.green(pixel);
-
-                    if (redValue > blueValue && redValue > greenValue) {
-                        redCount++;
-                    } else if (blueValue > redValue && blueValue > greenValue) {
-                        blueCount++;
-                    }
-                }
-            }
-        } else if (side == CameraSide.BOTTOMLEFTLEFT) {
-            for (int x = 0; x < bitmap.getWidth() / 4; x += 2) {
-                for (int y = 0; y < bitmap.getHeight() / 2; y += 2) {
-                    pixel = bitmap.getPixel(x, y);
-
-                    redValue = Color.red(pixel);
-                    blueValue = Color.blue(pixel);
-                    greenValue = Color.green(pixel);
-
-                    if (redValue > blueValue && redValue > greenValue) {
-                        redCount++;
-                    } else if (blueValue > redValue && blueValue > greenValue) {
-                        blueCount++;
-                    }
-                }
-            }
-        } else if (side == CameraSide.BOTTOMLEFTRIGHT) {
-            for (int x = bitmap.getWidth() / 4; x < bitmap.getWidth() / 2; x += 2) {
-                for (int y = 0; y < bitmap.getHeight() / 2; y += 2) {
-                    pixel = bitmap.getPixel(x, y);
-
-                    redValue = Color.red(pixel);
-                    blueValue = Color.blue(pixel);
-                    greenValue = Color.green(pixel);
-
-                    if (redValue > blueValue && redValue > greenValue) {
-                        redCount++;
-                    } else if (blueValue > redValue && blueValue > greenValue) {
-                        blueCount++;
-                    }
-                }
-            }
-        } else {
-            throw new NullPointerException();
-        }
+            frameReader.wrap(rgb.getPixels(), rgb.getWidth(), rgb.getHeight(), rgb.getStride());
 
-        if (colorOption == RGBColor.RED) {
-            return redCount;
-        } else if (colorOption == RGBColor.BLUE) {
-            return blueCount;
-        } else {
-            return 0;
+            return classifier.classify(frameReader);
+        } finally {
+            closeFrame();
         }
     }
 
     public JewelState jewelSearch_Full() {
-        int leftRed = countPixels(CameraSide.LEFT, RGBColor.RED);
-        int leftBlue = countPixels(CameraSide.LEFT, RGBColor.BLUE);
-
-        int rightRed = countPixels(CameraSide.RIGHT, RGBColor.RED);
-        int rightBlue = countPixels(CameraSide.RIGHT, RGBColor.BLUE);
+        PixelCounts counts = countPixels(fullClassifier);
 
-
-        if (leftRed > leftBlue && rightBlue > rightRed) {
-            return JewelState.RED;
-        } else if (leftBlue > leftRed && rightRed > rightBlue) {
-            return JewelState.BLUE;
-        } else {
+        if (counts == null) {
             return JewelState.UNKNOWN;
         }
+
+        return counts.jewelAt(CameraSide.LEFT, CameraSide.RIGHT);
     }
 
     public JewelState jewelSearch_BottomLeft() {
-        int leftRed = countPixels(CameraSide.BOTTOMLEFTLEFT, RGBColor.RED);
-        int leftBlue = countPixels(CameraSide.BOTTOMLEFTLEFT, RGBColor.BLUE);
+        PixelCounts counts = countPixels(bottomLeftClassifier);
 
-        int rightRed = countPixels(CameraSide.BOTTOMLEFTRIGHT, RGBColor.RED);
-        int rightBlue = countPixels(CameraSide.BOTTOMLEFTRIGHT, RGBColor.BLUE);
-
-
-        if (leftRed > leftBlue && rightBlue > rightRed) {
-            return JewelState.RED;
-        } else if (leftBlue > leftRed && rightRed > rightBlue) {
-            return JewelState.BLUE;
-        } else {
+        if (counts == null) {
             return JewelState.UNKNOWN;
         }
+
+        return counts.jewelAt(BOTTOMLEFTLEFT, BOTTOMLEFTRIGHT);
     }
 }
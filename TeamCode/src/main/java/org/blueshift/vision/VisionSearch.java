@@ -0,0 +1,128 @@
+package org.blueshift.vision;
+
+import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Searches for the pictograph (VuMark) and the jewel at the same time on the same stream of camera
+ * frames. Each search runs on its own thread and finishes on its own, so an autonomous program can
+ * start acting on the jewel as soon as it is found while the pictograph search keeps going in the
+ * background. Started through {@link VuforiaTracker#startSearch(int, int, double)}.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class VisionSearch {
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final Future<RelicRecoveryVuMark> vuMarkResult;
+    private final Future<JewelState> jewelResult;
+
+    /**
+     * @param tracker           - The tracker to search with. Both kinds of tracking must be on.
+     * @param pictographTimeout - The longest time to look for the pictograph (ms). Zero skips it.
+     * @param jewelTimeout      - The longest time to look for the jewel (ms).
+     * @param jewelConfidence   - [0, 1), How sure the jewel search must be to end early.
+     */
+    VisionSearch(final VuforiaTracker tracker, final int pictographTimeout, final int jewelTimeout,
+                 final double jewelConfidence) {
+        vuMarkResult = executor.submit(new Callable<RelicRecoveryVuMark>() {
+            @Override
+            public RelicRecoveryVuMark call() {
+                if (pictographTimeout <= 0) {
+                    return RelicRecoveryVuMark.UNKNOWN;
+                }
+
+                //Sleeps until Vuforia reports the VuMark (See VuMarkListener)
+                return tracker.trackPictograph(pictographTimeout);
+            }
+        });
+
+        jewelResult = executor.submit(new Callable<JewelState>() {
+            @Override
+            public JewelState call() {
+                return tracker.jewelSearch_Voting(jewelConfidence, jewelTimeout);
+            }
+        });
+
+        //Let the threads end once both searches are done
+        executor.shutdown();
+    }
+
+    public boolean isVuMarkDone() { return vuMarkResult.isDone(); }
+    public boolean isJewelDone() { return jewelResult.isDone(); }
+
+    /**
+     * Wait for the pictograph search to finish. It will never take longer than the pictograph
+     * timeout the search was started with.
+     *
+     * @return RelicRecoveryVuMark - The pictograph, or UNKNOWN if it was not found.
+     */
+    public RelicRecoveryVuMark getVuMark() {
+        return getVuMark(Long.MAX_VALUE);
+    }
+
+    /**
+     * Wait for the pictograph search to finish.
+     *
+     * @param timeoutMs - The longest time to wait, in milliseconds.
+     * @return RelicRecoveryVuMark - The pictograph, or UNKNOWN if it was not found in time.
+     */
+    public RelicRecoveryVuMark getVuMark(long timeoutMs) {
+        RelicRecoveryVuMark vuMark = await(vuMarkResult, timeoutMs);
+        return vuMark == null ? RelicRecoveryVuMark.UNKNOWN : vuMark;
+    }
+
+    /**
+     * Wait for the jewel search to finish. It will never take much longer than the jewel timeout
+     * the search was started with.
+     *
+     * @return JewelState - The jewel, or UNKNOWN if it was not found.
+     */
+    public JewelState getJewel() {
+        return getJewel(Long.MAX_VALUE);
+    }
+
+    /**
+     * Wait for the jewel search to finish.
+     *
+     * @param timeoutMs - The longest time to wait, in milliseconds.
+     * @return JewelState - The jewel, or UNKNOWN if it was not found in time.
+     */
+    public JewelState getJewel(long timeoutMs) {
+        JewelState jewel = await(jewelResult, timeoutMs);
+        return jewel == null ? JewelState.UNKNOWN : jewel;
+    }
+
+    /** Stop both searches, whether they are done or not. */
+    public void cancel() {
+        vuMarkResult.cancel(true);
+        jewelResult.cancel(true);
+        executor.shutdownNow();
+    }
+
+    private static <T> T await(Future<T> result, long timeoutMs) {
+        try {
+            return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        } catch (TimeoutException e) {
+            //Fall through to the default
+        } catch (CancellationException e) {
+            //Fall through to the default
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+package org.blueshift.vision;
+
+import com.vuforia.TrackableResult;
+
+import org.firstinspires.ftc.robotcore.external.matrices.OpenGLMatrix;
+import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackable;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackableDefaultListener;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listens for the pictograph (VuMark) on Vuforia's own tracking thread instead of having the OpMode
+ * poll for it. Every time Vuforia tracks the VuMark it is published as a {@link VuMarkSighting}
+ * (the VuMark, its pose and the time it was seen). OpModes can pick up the newest sighting, wait
+ * for the next one, or be called back for each one. Loaded with the RelicVuMark trackables by
+ * {@link VuforiaSession}.
+ *
+ * The usual RelicRecoveryVuMark.from(trackable) still works, since this is also the default listener.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class VuMarkListener extends VuforiaTrackableDefaultListener {
+    /** Called on Vuforia's tracking thread for every sighting, so it must return quickly. */
+    public interface Callback {
+        void onSighting(VuMarkSighting sighting);
+    }
+
+    private final Object sightingLock = new Object();
+    private VuMarkSighting latestSighting;
+
+    private final CopyOnWriteArrayList<Callback> callbacks = new CopyOnWriteArrayList<Callback>();
+
+    /**
+     * @param trackable - The VuMark template (made by Vuforia while loading the trackables).
+     */
+    public VuMarkListener(VuforiaTrackable trackable) {
+        super(trackable);
+    }
+
+    @Override
+    public void onTracked(TrackableResult trackableResult, VuforiaTrackable child) {
+        long now = System.nanoTime() / 1000000;
+        RelicRecoveryVuMark vuMark;
+        OpenGLMatrix pose;
+
+        synchronized (this) {
+            super.onTracked(trackableResult, child);
+
+            vuMark = RelicRecoveryVuMark.from(getVuMarkInstanceId());
+            pose = getPose();
+        }
+
+        //Only a VuMark that could be read counts as a sighting
+        if (vuMark == RelicRecoveryVuMark.UNKNOWN || pose == null) { return; }
+
+        VuMarkSighting sighting = new VuMarkSighting(vuMark, pose, now);
+
+        synchronized (sightingLock) {
+            latestSighting = sighting;
+            sightingLock.notifyAll();
+        }
+
+        for (Callback callback : callbacks) {
+            callback.onSighting(sighting);
+        }
+    }
+
+    /**
+     * @param maxAgeMs - The oldest a sighting may be (in milliseconds) to still be returned.
+     * @return VuMarkSighting - The newest sighting, or null if there is none that new.
+     */
+    public VuMarkSighting latestSighting(long maxAgeMs) {
+        synchronized (sightingLock) {
+            return latestSighting != null && latestSighting.getAge() <= maxAgeMs ? latestSighting : null;
+        }
+    }
+
+    /**
+     * Wait for a sighting newer than maxAgeMs, returning right away if there already is one.
+     *
+     * @param maxAgeMs  - The oldest a sighting may be (in milliseconds) to still be returned.
+     * @param timeoutMs - The longest time to wait, in milliseconds.
+     * @return VuMarkSighting - The sighting, or null if none came in time.
+     */
+    public VuMarkSighting awaitSighting(long maxAgeMs, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() / 1000000 + timeoutMs;
+
+        synchronized (sightingLock) {
+            VuMarkSighting sighting = latestSighting(maxAgeMs);
+
+            while (sighting == null) {
+                long wait = deadline - System.nanoTime() / 1000000;
+                if (wait <= 0) { return null; }
+
+                sightingLock.wait(wait);
+                sighting = latestSighting(maxAgeMs);
+            }
+
+            return sighting;
+        }
+    }
+
+    public void addCallback(Callback callback) { callbacks.add(callback); }
+    public void removeCallback(Callback callback) { callbacks.remove(callback); }
+
+    /** Forget the last sighting and every callback (when the OpMode that used them stops). */
+    public void reset() {
+        synchronized (sightingLock) {
+            latestSighting = null;
+        }
+
+        callbacks.clear();
+    }
+}
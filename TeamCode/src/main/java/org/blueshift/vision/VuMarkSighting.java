@@ -0,0 +1,70 @@
+package org.blueshift.vision;
+
+import org.firstinspires.ftc.robotcore.external.matrices.OpenGLMatrix;
+import org.firstinspires.ftc.robotcore.external.matrices.VectorF;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark;
+
+/**
+ * One sighting of the pictograph (VuMark): which one it is, where it is relative to the camera, and
+ * when it was seen. Published by {@link VuMarkListener}. The pose uses the FTC phone coordinates:
+ * X to the right of the screen, Y to the top and Z out of the screen, in millimeters.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class VuMarkSighting {
+    private final RelicRecoveryVuMark vuMark;
+    private final OpenGLMatrix pose;
+    private final long timestamp;
+
+    private final float x, y, z;
+    private final float rotationX, rotationY, rotationZ;
+
+    /**
+     * @param vuMark    - The VuMark that was seen.
+     * @param pose      - The VuMark's pose relative to the camera.
+     * @param timestamp - When it was seen, in milliseconds of System.nanoTime().
+     */
+    public VuMarkSighting(RelicRecoveryVuMark vuMark, OpenGLMatrix pose, long timestamp) {
+        this.vuMark = vuMark;
+        this.pose = pose;
+        this.timestamp = timestamp;
+
+        VectorF translation = pose.getTranslation();
+        x = translation.get(0);
+        y = translation.get(1);
+        z = translation.get(2);
+
+        Orientation rotation = Orientation.getOrientation(pose, AxesReference.EXTRINSIC, AxesOrder.XYZ, AngleUnit.RADIANS);
+        rotationX = rotation.firstAngle;
+        rotationY = rotation.secondAngle;
+        rotationZ = rotation.thirdAngle;
+    }
+
+    public RelicRecoveryVuMark getVuMark() { return vuMark; }
+    public OpenGLMatrix getPose() { return pose; }
+    public long getTimestamp() { return timestamp; }
+
+    /** @return long - How long ago the VuMark was seen, in milliseconds. */
+    public long getAge() { return System.nanoTime() / 1000000 - timestamp; }
+
+    //Where the VuMark is relative to the camera (mm)
+    public float getX() { return x; }
+    public float getY() { return y; }
+    public float getZ() { return z; }
+
+    //How the VuMark is turned relative to the camera (radians, extrinsic X then Y then Z)
+    public float getRotationX() { return rotationX; }
+    public float getRotationY() { return rotationY; }
+    public float getRotationZ() { return rotationZ; }
+
+    @Override
+    public String toString() {
+        return String.format("%s at (%.0f, %.0f, %.0f) mm", vuMark, x, y, z);
+    }
+}
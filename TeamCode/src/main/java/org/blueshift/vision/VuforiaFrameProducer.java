@@ -0,0 +1,205 @@
+package org.blueshift.vision;
+
+import com.vuforia.Image;
+import com.vuforia.PIXEL_FORMAT;
+
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer;
+
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A background thread that keeps draining Vuforia's frame queue so that the OpMode thread never
+ * has to wait on it. Every RGB565 frame is copied into a pooled {@link Rgb565Frame}, the Vuforia
+ * frame is closed right away, and the copy is published to a {@link FrameMailbox} where the newest
+ * frame can be picked up at any time.
+ *
+ * When the OpMode using Vuforia stops, the shared {@link VuforiaSession} goes quiet and frames stop
+ * being queued (Vuforia itself keeps running). If no frames show up for IDLE_TIMEOUT_MS the thread
+ * assumes this has happened and exits on its own.
+ *
+ * The frames can also be written to a {@link FrameRecorder} as they are captured. They are handed
+ * to it after being published, and it writes them on its own thread, so recording never delays a
+ * frame.
+ *
+ * @author Gabriel Wong
+ * @version 1.3
+ */
+
+public class VuforiaFrameProducer implements Runnable {
+    private final VuforiaLocalizer vuforia;
+    private final FrameMailbox mailbox = new FrameMailbox();
+
+    //The thread capturing frames, or null when stopped. A thread only captures while it is the one
+    //set here, so a thread left over from an earlier start() stops even if a new one has started
+    private final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+    //The last thread stopped, which start() waits for before capturing again
+    private Thread stoppedThread;
+    private volatile FrameRecorder recorder;
+
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long IDLE_TIMEOUT_MS = 2000;
+
+    /**
+     * @param vuforia - The localizer whose frame queue will be drained.
+     */
+    public VuforiaFrameProducer(VuforiaLocalizer vuforia) {
+        this.vuforia = vuforia;
+    }
+
+    /**
+     * Start capturing frames on a new thread. Does nothing if it is already capturing. If the last
+     * capture thread has not finished stopping yet, it is waited for first, so that only one thread
+     * ever fills frames.
+     */
+    public synchronized void start() {
+        if (thread.get() != null) { return; }
+
+        if (stoppedThread != null) {
+            try {
+                stoppedThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            stoppedThread = null;
+        }
+
+        Thread newThread = new Thread(this, "VuforiaFrameProducer");
+        newThread.setDaemon(true);
+        thread.set(newThread);
+        newThread.start();
+    }
+
+    /** Stop capturing frames and wait (for a while) for the capture thread to finish. */
+    public synchronized void stop() {
+        Thread oldThread = thread.getAndSet(null);
+
+        if (oldThread != null) {
+            oldThread.interrupt();
+
+            try {
+                oldThread.join(POLL_TIMEOUT_MS * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (oldThread.isAlive()) {
+                stoppedThread = oldThread;
+            }
+        }
+
+        mailbox.clear();
+    }
+
+    public boolean isRunning() { return thread.get() != null; }
+
+    /**
+     * Record every captured frame (as often as the recorder allows) after it is published.
+     *
+     * @param recorder - The recorder to write frames to, or null to stop recording.
+     */
+    public void setRecorder(FrameRecorder recorder) { this.recorder = recorder; }
+
+    /** @return FrameMailbox - Where the captured frames are published. */
+    public FrameMailbox getMailbox() { return mailbox; }
+
+    @Override
+    public void run() {
+        BlockingQueue<VuforiaLocalizer.CloseableFrame> queue = vuforia.getFrameQueue();
+        long lastFrameTime = System.nanoTime() / 1000000;
+
+        while (thread.get() == Thread.currentThread()) {
+            VuforiaLocalizer.CloseableFrame frame;
+
+            try {
+                frame = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            long now = System.nanoTime() / 1000000;
+
+            if (frame == null) {
+                //The OpMode has most likely stopped and the session has stopped queueing frames
+                if (now - lastFrameTime > IDLE_TIMEOUT_MS) { break; }
+                continue;
+            }
+
+            lastFrameTime = now;
+
+            try {
+                Image rgb = findRgbImage(frame);
+
+                if (rgb != null) {
+                    Rgb565Frame copy = copy(rgb);
+                    mailbox.publish(copy, now);
+
+                    //Only this thread refills frames, so the copy can't change until the next loop
+                    //even if a reader has already taken (and closed) it. The recorder copies it again
+                    //and writes it on its own thread
+                    FrameRecorder recorder = this.recorder;
+
+                    if (recorder != null) {
+                        recorder.record(copy, now);
+                    }
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                frame.close();
+            }
+        }
+
+        //Stopped on its own (Vuforia went quiet); a thread that was replaced leaves the new one alone
+        thread.compareAndSet(Thread.currentThread(), null);
+    }
+
+    /**
+     * Find the RGB565 image inside of the frame (see VuforiaTracker.initJewelTracking()).
+     *
+     * @return Image - The RGB565 image, or null if the frame does not have one.
+     */
+    private static Image findRgbImage(VuforiaLocalizer.CloseableFrame frame) {
+        long numImages = frame.getNumImages();
+
+        for (int i = 0; i < numImages; i++) {
+            if (frame.getImage(i).getFormat() == PIXEL_FORMAT.RGB565) {
+                return frame.getImage(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Copy the pixels of the image row by row into a pooled frame, dropping any row padding.
+     *
+     * @param rgb - An RGB565 image.
+     * @return Rgb565Frame - The filled frame, ready to be published.
+     */
+    private Rgb565Frame copy(Image rgb) {
+        int width = rgb.getWidth();
+        int height = rgb.getHeight();
+        int stride = rgb.getStride() / 2;
+
+        Rgb565Frame copy = mailbox.obtain(width, height);
+        ShortBuffer source = rgb.getPixels().order(ByteOrder.nativeOrder()).asShortBuffer();
+        short[] pixels = copy.getPixels();
+
+        if (stride == width) {
+            source.get(pixels, 0, width * height);
+        } else {
+            for (int y = 0; y < height; y++) {
+                source.position(y * stride);
+                source.get(pixels, y * width, width);
+            }
+        }
+
+        return copy;
+    }
+}
@@ -0,0 +1,197 @@
+package org.blueshift.vision;
+
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackable;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackables;
+import org.firstinspires.ftc.robotcore.internal.vuforia.VuforiaLocalizerImpl;
+
+/**
+ * Keeps one Vuforia localizer (with the RelicVuMark trackables loaded) running for as long as the
+ * robot controller app is open, and hands it out to OpModes through leases. Starting Vuforia and
+ * loading the trackables takes seconds, so only the first OpMode after the app starts pays for it;
+ * every OpMode after that gets the already warm localizer right away.
+ *
+ * The SDK normally shuts Vuforia down when the OpMode that started it stops. The localizer made
+ * here only goes quiet instead: the trackables are deactivated, frames stop being queued and every
+ * lease handed out during the OpMode ends. It is only really shut down when the app's activity is
+ * destroyed, or when a different camera is asked for.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public final class VuforiaSession {
+    private static final String VUFORIA_LICENSE_KEY = "AQfdha3/////AAAAGZL0n1bAsE6PhPRk2ZsrU28GbeRb+R9mOTvsv5dv8xLA+Fi/2ZqLOjcq93npWWM6jcqlyPmp76pka6/mCQEqGXEWZ2hHSaTOB8/XSgSao69oTendDtVCQjMY0ewFVhgXlg63pNtHIbq1OTchsAiuyfPIaTWs3Mii/JTqZEpNdlCSS1mshiYXH2fxUwmC/U5onbwMr3VNejuJS60rYacIzSkeYIRbMeeYNhxfJej4nNxrVPkCKcgkw10CHeKlnNLD9LuzSB6u/5dl1mSXsDh4P8gj02JjVYtWmEqvVRWC744RK97jA3KEemN9ALm6owsXtrCVN1CWnkOdlPJWFGlGZILEx7rxb9/st5hqUweC8iLs";
+
+    //The running localizer and its trackables, or null before the first lease
+    private static CachedLocalizer localizer;
+    private static VuforiaTrackables relicTrackables;
+    private static VuforiaLocalizer.CameraDirection cameraDirection;
+
+    //The leases out right now. Ending an OpMode starts a new generation, which ends every old lease
+    private static int leaseCount = 0;
+    private static int generation = 0;
+
+    private VuforiaSession() {}
+
+    /**
+     * Lease the localizer, starting it if it is not running yet. A localizer that is already running
+     * keeps the camera monitor it was started with.
+     *
+     * @param cameraMonitorViewId - The Camera Monitor (On the RC) hardware map ID, or 0 for none.
+     * @param direction           - The camera to use.
+     * @return Lease - The lease, to be released once the OpMode is done with Vuforia.
+     * @throws IllegalStateException - If the localizer is leased out with the other camera.
+     */
+    public static synchronized Lease acquire(int cameraMonitorViewId, VuforiaLocalizer.CameraDirection direction) {
+        if (localizer != null && cameraDirection != direction) {
+            if (leaseCount > 0) {
+                throw new IllegalStateException("Vuforia is already in use with the " + cameraDirection + " camera");
+            }
+
+            //Vuforia can only run one camera at a time
+            localizer.shutDown();
+        }
+
+        if (localizer == null) {
+            VuforiaLocalizer.Parameters parameters = cameraMonitorViewId != 0
+                    ? new VuforiaLocalizer.Parameters(cameraMonitorViewId) : new VuforiaLocalizer.Parameters();
+            parameters.vuforiaLicenseKey = VUFORIA_LICENSE_KEY;
+            parameters.cameraDirection = direction;
+
+            localizer = new CachedLocalizer(parameters);
+            cameraDirection = direction;
+
+            //The VuMark is reported as it is tracked (See VuMarkListener)
+            relicTrackables = localizer.loadTrackablesFromAsset("RelicVuMark", VuMarkListener.class);
+            relicTrackables.get(0).setName("relicVuMarkTemplate");
+        }
+
+        leaseCount++;
+        return new Lease(generation);
+    }
+
+    /** Lease the localizer without a camera monitor (see acquire(int, CameraDirection)). */
+    public static Lease acquire(VuforiaLocalizer.CameraDirection direction) {
+        return acquire(0, direction);
+    }
+
+    /** @return boolean - Whether a localizer is running, so that the next lease will be instant. */
+    public static synchronized boolean isWarm() { return localizer != null; }
+
+    /** Stop tracking and queueing frames, but leave Vuforia and the camera running. */
+    private static void quiet() {
+        relicTrackables.deactivate();
+        ((VuMarkListener) relicTrackables.get(0).getListener()).reset();
+        localizer.setFrameQueueCapacity(0);
+    }
+
+    /** Called when the OpMode that was using the localizer stops: end every lease and go quiet. */
+    private static synchronized void endOpMode(CachedLocalizer stopped) {
+        if (stopped != localizer) { return; }
+
+        generation++;
+        leaseCount = 0;
+        quiet();
+    }
+
+    /** Forget the localizer once it has really been shut down. */
+    private static synchronized void discard(CachedLocalizer closed) {
+        if (closed != localizer) { return; }
+
+        localizer = null;
+        relicTrackables = null;
+        cameraDirection = null;
+        generation++;
+        leaseCount = 0;
+    }
+
+    /**
+     * One OpMode's hold on the localizer. The lease ends when it is released, or when the OpMode
+     * stops, whichever comes first; the localizer must not be used after that.
+     */
+    public static final class Lease {
+        private final int leaseGeneration;
+        private boolean released = false;
+
+        private Lease(int leaseGeneration) {
+            this.leaseGeneration = leaseGeneration;
+        }
+
+        public VuforiaLocalizer getVuforia() {
+            synchronized (VuforiaSession.class) {
+                checkValid();
+                return localizer;
+            }
+        }
+
+        public VuforiaTrackables getRelicTrackables() {
+            synchronized (VuforiaSession.class) {
+                checkValid();
+                return relicTrackables;
+            }
+        }
+
+        /** @return VuforiaTrackable - The relic VuMark template (the first of the relic trackables). */
+        public VuforiaTrackable getRelicTemplate() {
+            return getRelicTrackables().get(0);
+        }
+
+        /** @return VuMarkListener - Where sightings of the relic VuMark are published. */
+        public VuMarkListener getVuMarkListener() {
+            return (VuMarkListener) getRelicTemplate().getListener();
+        }
+
+        /** @return boolean - Whether the lease has neither been released nor ended with its OpMode. */
+        public boolean isValid() {
+            synchronized (VuforiaSession.class) {
+                return !released && leaseGeneration == generation;
+            }
+        }
+
+        private void checkValid() {
+            if (!isValid()) {
+                throw new IllegalStateException("The Vuforia lease has already ended");
+            }
+        }
+
+        /** Give the localizer back. The session goes quiet once every lease is given back. */
+        public void release() {
+            synchronized (VuforiaSession.class) {
+                if (!isValid()) { return; }
+
+                released = true;
+                leaseCount--;
+
+                if (leaseCount == 0) {
+                    quiet();
+                }
+            }
+        }
+    }
+
+    /**
+     * A localizer that outlives its OpMode. The SDK calls close() both when an OpMode stops and when
+     * the activity is destroyed; only the latter really shuts it down.
+     */
+    private static final class CachedLocalizer extends VuforiaLocalizerImpl {
+        CachedLocalizer(VuforiaLocalizer.Parameters parameters) {
+            super(parameters);
+        }
+
+        @Override
+        protected void close() {
+            if (activity == null || activity.isFinishing() || activity.isDestroyed()) {
+                shutDown();
+            } else {
+                endOpMode(this);
+            }
+        }
+
+        /** Really close Vuforia (close() only goes quiet while the app is running). */
+        void shutDown() {
+            discard(this);
+            super.close();
+        }
+    }
+}
@@ -1,18 +1,22 @@
 package org.blueshift.vision;
 
-import android.graphics.Bitmap;
-import android.graphics.Color;
-
-import com.qualcomm.robotcore.util.ElapsedTime;
-import com.vuforia.Image;
 import com.vuforia.PIXEL_FORMAT;
 import com.vuforia.Vuforia;
 
-import org.firstinspires.ftc.robotcore.external.ClassFactory;
 import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark;
 import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer;
 import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackable;
 import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackables;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * This is the VuForia tracking mechanism for a VuMark completely rolled into one function. To use
@@ -25,52 +29,98 @@ import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackables;
  * @version 1.0
  */
 
-public class VuforiaTracker {
+public class VuforiaTracker implements JewelDetector {
+    private final VuforiaSession.Lease lease;
     private VuforiaLocalizer vuforia;
 
     private VuforiaTrackables relicTrackables;
     private VuforiaTrackable relicTemplate;
+    private VuMarkListener vuMarkListener;
 
     private int leftRed = 0, leftBlue = 0, rightRed = 0, rightBlue = 0;
-
-    private String vuforiaLicenseKey = "AQfdha3/////AAAAGZL0n1bAsE6PhPRk2ZsrU28GbeRb+R9mOTvsv5dv8xLA+Fi/2ZqLOjcq93npWWM6jcqlyPmp76pka6/mCQEqGXEWZ2hHSaTOB8/XSgSao69oTendDtVCQjMY0ewFVhgXlg63pNtHIbq1OTchsAiuyfPIaTWs3Mii/JTqZEpNdlCSS1mshiYXH2fxUwmC/U5onbwMr3VNejuJS60rYacIzSkeYIRbMeeYNhxfJej4nNxrVPkCKcgkw10CHeKlnNLD9LuzSB6u/5dl1mSXsDh4P8gj02JjVYtWmEqvVRWC744RK97jA3KEemN9ALm6owsXtrCVN1CWnkOdlPJWFGlGZILEx7rxb9/st5hqUweC8iLs";
+    //How the last (or current) voting search stands; read from other threads by FusionJewelDetector
+    private volatile JewelState lastJewel = JewelState.UNKNOWN;
+    private volatile double lastConfidence = 0;
+
+    //Whether the voting search looks for the jewels' blobs before counting sections (see setBlobSearch())
+    private volatile boolean blobSearch = true;
+
+    //Classifiers for each kind of jewel search, and the reader they look at the frame through. They
+    //look at every pixel of a shrunk frame, split between all of the phone's cores, and pick their
+    //red and blue thresholds from each frame so that venue lighting does not tip the counts.
+    private final JewelClassifier fullClassifier = new StripedJewelClassifier(StripedJewelClassifier.sharedPool(),
+            Runtime.getRuntime().availableProcessors(), ColorClassTable.jewels(), JewelClassifier.FULL_SEARCH_DECIMATION,
+            JewelClassifier.SEARCH_STEP, true, CameraSide.regionsOf(CameraSide.LEFT, CameraSide.RIGHT));
+    private final JewelClassifier bottomLeftClassifier = new StripedJewelClassifier(StripedJewelClassifier.sharedPool(),
+            Runtime.getRuntime().availableProcessors(), ColorClassTable.jewels(), JewelClassifier.BOTTOM_LEFT_SEARCH_DECIMATION,
+            JewelClassifier.SEARCH_STEP, true, CameraSide.regionsOf(CameraSide.BOTTOMLEFTLEFT, CameraSide.BOTTOMLEFTRIGHT));
+    private final BlobDetector blobDetector = new BlobDetector(ColorClassTable.jewels(), 4, MIN_JEWEL_AREA);
+    private final Rgb565Reader frameReader = new Rgb565Reader();
+    private VuforiaFrameProducer frameProducer;
+    private FrameRecorder frameRecorder;
+
+    //The smallest blob (in pixels) that can be a jewel
+    private static final int MIN_JEWEL_AREA = 1000;
+
+    //The oldest frame a jewel search will use, and how long it will wait for one (milliseconds)
+    private static final long MAX_FRAME_AGE_MS = 250;
+    private static final long FRAME_TIMEOUT_MS = 500;
+
+    //The oldest sighting of the pictograph that still counts as seeing it now (milliseconds)
+    private static final long MAX_SIGHTING_AGE_MS = 250;
+
+    //Where frame recordings are saved (on the phone), and how often a frame is recorded by default
+    private static final File RECORDING_DIR = new File(AppUtil.ROBOT_DATA_DIR, "JewelFrames");
+    private static final long DEFAULT_RECORDING_INTERVAL_MS = 200;
+
+    //A full frame is close to 2 MB, so each recording is capped (about 17 frames) and only the
+    //newest recordings are kept, so that the phone never fills up
+    private static final long MAX_RECORDING_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_RECORDINGS = 10;
+
+    //Three frames in a row agreeing on the jewel (see JewelVoter)
+    private static final double DEFAULT_JEWEL_CONFIDENCE = 0.7;
 
     /**
-     * This constructor initializes all of the Vuforia necessities. It activities the program with
-     * our team's vuforia license key, outputs the view to the RC, and tells the program what object
-     * it should be looking for from the Assets folder.
+     * This constructor gets all of the Vuforia necessities from the shared {@link VuforiaSession}:
+     * the localizer, activated with our team's vuforia license key and showing the view on the RC,
+     * and the object it should be looking for from the Assets folder. Only the first tracker made
+     * after the app starts waits for Vuforia to start.
      *
      * @param cameraMonitorViewId - The Camera Monitor (On the RC) hardware map ID.
      */
     public VuforiaTracker(int cameraMonitorViewId) {
-        VuforiaLocalizer.Parameters parameters = new VuforiaLocalizer.Parameters(cameraMonitorViewId);
-        parameters.vuforiaLicenseKey = vuforiaLicenseKey;
-
-        //Indicate what camera to use
-        parameters.cameraDirection = VuforiaLocalizer.CameraDirection.FRONT;
-        this.vuforia = ClassFactory.createVuforiaLocalizer(parameters);
-
-        relicTrackables = this.vuforia.loadTrackablesFromAsset("RelicVuMark");
-        relicTemplate = relicTrackables.get(0);
-        relicTemplate.setName("relicVuMarkTemplate");
+        this(VuforiaSession.acquire(cameraMonitorViewId, VuforiaLocalizer.CameraDirection.FRONT));
     }
 
     /**
-     * This constructor initializes all of the Vuforia necessities. It activities the program with
-     * our team's vuforia license key and tells the program what object it should be looking for
-     * from the Assets folder. This constructor DOES NOT include a visual output.
+     * This constructor gets all of the Vuforia necessities from the shared {@link VuforiaSession}.
+     * This constructor DOES NOT include a visual output (unless Vuforia was already started with one).
      */
     public VuforiaTracker() {
-        VuforiaLocalizer.Parameters parameters = new VuforiaLocalizer.Parameters();
-        parameters.vuforiaLicenseKey = vuforiaLicenseKey;
+        this(VuforiaSession.acquire(VuforiaLocalizer.CameraDirection.FRONT));
+    }
 
-        //Indicate what camera to use
-        parameters.cameraDirection = VuforiaLocalizer.CameraDirection.FRONT;
-        this.vuforia = ClassFactory.createVuforiaLocalizer(parameters);
+    private VuforiaTracker(VuforiaSession.Lease lease) {
+        this.lease = lease;
+        this.vuforia = lease.getVuforia();
 
-        relicTrackables = this.vuforia.loadTrackablesFromAsset("RelicVuMark");
-        relicTemplate = relicTrackables.get(0);
-        relicTemplate.setName("relicVuMarkTemplate");
+        relicTrackables = lease.getRelicTrackables();
+        relicTemplate = lease.getRelicTemplate();
+        vuMarkListener = lease.getVuMarkListener();
+    }
+
+    /**
+     * Stop every search and recording and give Vuforia back to the {@link VuforiaSession}. Vuforia
+     * keeps running for the next OpMode. Stopping the OpMode does the same on its own.
+     */
+    public void close() {
+        stopRecording();
+        if (frameProducer != null) {
+            frameProducer.stop();
+        }
+
+        lease.release();
     }
 
     /**
@@ -85,196 +135,227 @@ public class VuforiaTracker {
     }
 
     /**
-     *
+     * Turn on the RGB565 frames needed for jewel searching and start the background thread that
+     * captures them (see {@link VuforiaFrameProducer}).
      */
     public void initJewelTracking() {
         Vuforia.setFrameFormat(PIXEL_FORMAT.RGB565, true); //enables RGB565 format for the image
 
         vuforia.setFrameQueueCapacity(1); //tells VuforiaLocalizer to only store one frame at a time
+
+        if (frameProducer == null) {
+            frameProducer = new VuforiaFrameProducer(vuforia);
+        }
+        frameProducer.setRecorder(frameRecorder);
+        frameProducer.start();
     }
 
     /**
-     * Meant to run in a loop, it will check to see if any instances of relicTemplate are currently
-     * visible. RelicRecoveryVuMark is an enumeration which can have the following values: UNKNOWN,
-     * LEFT, CENTER, and RIGHT. When a VuMark is visible, something other than UNKNOWN will be
-     * returned by the RelicRecoveryVuMark#from(VuforiaTrackable)}.
+     * Stop capturing frames for jewel searching.
+     */
+    public void quitJewelTracking() {
+        if (frameProducer != null) {
+            frameProducer.stop();
+        }
+
+        vuforia.setFrameQueueCapacity(0);
+    }
+
+    /**
+     * Start saving the frames the jewel search sees to a new file in RECORDING_DIR, so that they can
+     * be looked at (and the jewel search rerun on them with a ReplayFrameSource) after the match.
+     * The file stops growing at MAX_RECORDING_BYTES, and the oldest recordings are deleted so that
+     * at most MAX_RECORDINGS are kept.
      *
-     * @return RelicRecoveryVuMark - the vuMark that the tracker can currently see.
+     * @param minIntervalMs - The least time between two recorded frames, in milliseconds.
+     * @return File - The recording, or null if it could not be created.
      */
-    public RelicRecoveryVuMark trackPictograph(int timeout) {
-        ElapsedTime relicRuntime = new ElapsedTime();
-        relicRuntime.reset();
+    public File startRecording(long minIntervalMs) {
+        stopRecording();
 
-        initPictographTracking();
+        deleteOldRecordings(MAX_RECORDINGS - 1);
 
-        RelicRecoveryVuMark vuMark = RelicRecoveryVuMark.from(relicTemplate);
+        String name = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.US).format(new Date());
 
-        boolean stillRunning = true;
+        try {
+            frameRecorder = new FrameRecorder(new File(RECORDING_DIR, name + FrameRecording.EXTENSION), minIntervalMs, MAX_RECORDING_BYTES);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
 
-        while (stillRunning) {
-            if (relicRuntime.milliseconds() < timeout && (vuMark == RelicRecoveryVuMark.UNKNOWN)) {
-                vuMark = RelicRecoveryVuMark.from(relicTemplate);
-            } else {
-                stillRunning = false;
-            }
+        if (frameProducer != null) {
+            frameProducer.setRecorder(frameRecorder);
         }
 
-        return vuMark;
+        return frameRecorder.getFile();
     }
 
     /**
-     * Grab the image frame from the front camera through VuForia's engine.
-     *
-     * @return Image - the frame as an RGB565 image.
+     * Start saving the frames the jewel search sees, DEFAULT_RECORDING_INTERVAL_MS apart.
      */
-    private Image getImage() {
-        Image rgb = null;
+    public File startRecording() {
+        return startRecording(DEFAULT_RECORDING_INTERVAL_MS);
+    }
 
-        try {
-            //Take a frame from the frame queue - there where only be one due to configurations.
-            VuforiaLocalizer.CloseableFrame frame = vuforia.getFrameQueue().take();
+    /**
+     * Delete the oldest recordings in RECORDING_DIR until no more than the given number are left.
+     * The names start with the time they were made, so the oldest sort first.
+     *
+     * @param keep - How many recordings to keep.
+     */
+    private static void deleteOldRecordings(int keep) {
+        File[] files = RECORDING_DIR.listFiles();
+        if (files == null) { return; }
 
-            long numImages = frame.getNumImages();
+        List<File> recordings = new ArrayList<File>();
 
-            //Count through every image (1) and set rgb equal to it. (RGB565)
-            for (int i = 0; i < numImages; i++) {
-                if (frame.getImage(i).getFormat() == PIXEL_FORMAT.RGB565) {
-                    rgb = frame.getImage(i);
-                    break;
-                }
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(FrameRecording.EXTENSION)) {
+                recordings.add(file);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
 
-        return rgb;
+        Collections.sort(recordings);
+
+        //A recording that can not be deleted is left alone; the next one will try again
+        for (int i = 0; i < recordings.size() - keep; i++) {
+            recordings.get(i).delete();
+        }
+    }
+
+    /**
+     * Stop saving frames and close the recording.
+     */
+    public void stopRecording() {
+        if (frameRecorder == null) { return; }
+
+        if (frameProducer != null) {
+            frameProducer.setRecorder(null);
+        }
+
+        frameRecorder.close();
+        frameRecorder = null;
+    }
+
+    /**
+     * Wait for the pictograph to be seen, for at most timeout milliseconds. The VuMark is reported
+     * by Vuforia's tracking thread as it is tracked (see {@link VuMarkListener}), so this thread
+     * sleeps until then instead of polling. RelicRecoveryVuMark is an enumeration which can have the
+     * following values: UNKNOWN, LEFT, CENTER, and RIGHT.
+     *
+     * @return RelicRecoveryVuMark - the vuMark that the tracker saw, or UNKNOWN if none was seen in time.
+     */
+    public RelicRecoveryVuMark trackPictograph(int timeout) {
+        VuMarkSighting sighting = awaitPictograph(timeout);
+        return sighting == null ? RelicRecoveryVuMark.UNKNOWN : sighting.getVuMark();
     }
 
     /**
-     * Convert the input RGB565 image into Android's BitMap format. This will be used for getting
-     * certain pixel values later in the countPixels() method.
+     * Wait for the pictograph to be seen, for at most timeout milliseconds, and return where it is
+     * as well as which one it is (for lining up with the cryptobox).
      *
-     * @param rgb - An RGB565 image usually gotten through the getImage() method.
-     * @return Bitmap - the input RGB565 image in Android's BitMap form.
+     * @param timeout - The longest time to wait, in milliseconds.
+     * @return VuMarkSighting - The VuMark, its pose and when it was seen, or null if none was seen in time.
      */
-    private Bitmap processImage(Image rgb) {
-        Bitmap bitmap = null;
+    public VuMarkSighting awaitPictograph(long timeout) {
+        initPictographTracking();
 
         try {
-            bitmap = Bitmap.createBitmap(rgb.getWidth(), rgb.getHeight(), Bitmap.Config.RGB_565);
-            bitmap.copyPixelsFromBuffer(rgb.getPixels());
-        } catch (NullPointerException e) {
-            e.printStackTrace();
+            return vuMarkListener.awaitSighting(MAX_SIGHTING_AGE_MS, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         }
+    }
 
-        return bitmap;
+    /** @return VuMarkListener - Where every sighting of the pictograph is published as it happens. */
+    public VuMarkListener getVuMarkListener() { return vuMarkListener; }
+
+    /**
+     * Look at the pictograph once without waiting.
+     *
+     * @return RelicRecoveryVuMark - the vuMark that the tracker can currently see.
+     */
+    public RelicRecoveryVuMark currentPictograph() {
+        return RelicRecoveryVuMark.from(relicTemplate);
     }
 
     /**
-     * LEFT is the top side of the bear. To count the pixels, this method takes every second pixel
-     * given in the Bitmap image in the specified quadrant of the camera (CameraSide) by looping
-     * through each case and comparing the RGB(565) values with each other. For example, comparing
-     * a pixel's RGB values includes one color being over the other two. If the Red value is greater
-     * than Blue, then the pixel is red. If the Blue value is greater than Red, then the pixel is
-     * blue. This continues on until the entire quadrant has been run through.
+     * Start searching for the pictograph and the jewel at the same time (see {@link VisionSearch}).
+     * Pictograph and jewel tracking are both turned on so that they share the camera's frames.
      *
-     * @param side - The side of the Camera that the jewels should be searched on.
-     * @param colorOption - What color (Red or Blue) that should be counted.
-     * @return int - The number of pixels of the color (colorOption).
+     * @param pictographTimeout - The longest time to look for the pictograph (ms). Zero skips it.
+     * @param jewelTimeout      - The longest time to look for the jewel (ms).
+     * @param jewelConfidence   - [0, 1), How sure the jewel search must be to end early.
+     * @return VisionSearch - The running search, holding both results once they are found.
      */
-    private int countPixels(CameraSide side, RGBColor colorOption) {
-        Bitmap bitmap = processImage(getImage());
-
-        //Return -1 if the input bitmap is 1
-        if (bitmap == null) { return -1; }
-
-        //Declare the initial counting variables
-        int redCount = 0, blueCount = 0;
-        int pixel, redValue, blueValue, greenValue;
-
-        /**
-         * For whatever quadrant specified in the function call, run a FOR loop for every second
-         * pixel in the photo's quadrant. Comparing a pixel's values runs as specified above.
-         */
-        if (side == CameraSide.LEFT) {
-            //The major for loop will run through every x value of the given frame
-            for (int x = 0; x < bitmap.getWidth() / 2; x += 2) {
-                //The minor for loop will run through every y value of the given frame
-                for (int y = 0; y < bitmap.getHeight(); y += 2) {
-                    //Grab the pixel from the coordinate
-                    pixel = bitmap.getPixel(x, y);
-
-                    //Grab the red/blue values from the pixel
-                    redValue = Color.red(pixel);
-                    blueValue = Color.blue(pixel);
-
-                    //Compare the two values
-                    if (redValue > blueValue) {
-                        redCount++;
-                    } else if (blueValue > redValue) {
-                        blueCount++;
-                    }
-                } //y
-            } //x
-        } else if (side == CameraSide.RIGHT){
-            for (int x = bitmap.getWidth() / 2; x < bitmap.getWidth(); x += 2) {
-                for (int y = 0; y < bitmap.getHeight(); y += 2) {
-                    pixel = bitmap.getPixel(x, y);
-
-                    redValue = Color.red(pixel);
-                    blueValue = Color.blue(pixel);
-                    greenValue = Color.green(pixel);
-
-                    if (redValue > blueValue) {
-                        redCount++;
-                    } else if (blueValue > redValue) {
-                        blueCount++;
-                    }
-                }
-            }
-        } else if (side == CameraSide.BOTTOMLEFTLEFT) {
-            for (int x = 0; x < bitmap.getWidth() / 4; x += 2) {
-                for (int y = 0; y < bitmap.getHeight() / 3; y += 2) {
-                    pixel = bitmap.getPixel(x, y);
-
-                    redValue = Color.red(pixel);
-                    blueValue = Color.blue(pixel);
-                    greenValue = Color.green(pixel);
-
-                    if (redValue > blueValue) {
-                        redCount++;
-                    } else if (blueValue > redValue) {
-                        blueCount++;
-                    }
-                }
-            }
-        } else if (side == CameraSide.BOTTOMLEFTRIGHT) {
-            for (int x = bitmap.getWidth() / 4; x < bitmap.getWidth() / 2; x += 2) {
-                for (int y = 0; y < bitmap.getHeight() / 3; y += 2) {
-                    pixel = bitmap.getPixel(x, y);
-
-                    redValue = Color.red(pixel);
-                    blueValue = Color.blue(pixel);
-                    greenValue = Color.green(pixel);
-
-                    if (redValue > blueValue) {
-                        redCount++;
-                    } else if (blueValue > redValue) {
-                        blueCount++;
-                    }
-                }
-            }
-        } else {
-            throw new NullPointerException();
+    public VisionSearch startSearch(int pictographTimeout, int jewelTimeout, double jewelConfidence) {
+        if (pictographTimeout > 0) {
+            initPictographTracking();
         }
+        initJewelTracking();
+
+        return new VisionSearch(this, pictographTimeout, jewelTimeout, jewelConfidence);
+    }
+
+    /**
+     * Start searching for the pictograph and the jewel at the same time, ending the jewel search
+     * once it reaches DEFAULT_JEWEL_CONFIDENCE.
+     */
+    public VisionSearch startSearch(int pictographTimeout, int jewelTimeout) {
+        return startSearch(pictographTimeout, jewelTimeout, DEFAULT_JEWEL_CONFIDENCE);
+    }
+
+    /**
+     * Take the newest frame captured by the frame producer without waiting for one.
+     *
+     * @param maxAgeMs - The oldest a frame may be (in milliseconds) to still be returned.
+     * @return Rgb565Frame - The newest frame, or null if there is none. It MUST be closed after use.
+     */
+    public Rgb565Frame latestFrame(long maxAgeMs) {
+        if (frameProducer == null) { return null; }
 
-        //Return the requested value.
-        if (colorOption == RGBColor.RED) {
-            return redCount;
-        } else if (colorOption == RGBColor.BLUE) {
-            return blueCount;
-        } else {
-            return 0;
+        return frameProducer.getMailbox().latestFrame(maxAgeMs);
+    }
+
+    /**
+     * Wait for a new frame from the frame producer, starting jewel tracking if it is not running.
+     *
+     * @return Rgb565Frame - The frame, or null if none showed up in time. It MUST be closed after use.
+     */
+    private Rgb565Frame awaitJewelFrame() {
+        if (frameProducer == null || !frameProducer.isRunning()) {
+            initJewelTracking();
+        }
+
+        try {
+            return frameProducer.getMailbox().awaitFrame(MAX_FRAME_AGE_MS, FRAME_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Grab a single frame and count the red and blue pixels of every section the classifier was set
+     * up with (see {@link JewelClassifier}). All of the sections are counted from the same frame,
+     * which is picked up from the frame producer instead of being pulled from Vuforia's queue.
+     *
+     * @param classifier - The classifier holding the sections of the camera to count.
+     * @return PixelCounts - The counts of each section, or null if no frame could be grabbed.
+     */
+    private PixelCounts countPixels(JewelClassifier classifier) {
+        Rgb565Frame frame = awaitJewelFrame();
+
+        //Return null if there is no frame to look at
+        if (frame == null) { return null; }
+
+        try {
+            frameReader.wrap(frame);
+            return classifier.classify(frameReader);
+        } finally {
+            frame.close();
         }
     }
 
@@ -284,20 +365,13 @@ public class VuforiaTracker {
      * @return JewelState - the jewel at LEFT (The top of the camera).
      */
     public JewelState jewelSearch_Full() {
-        int leftRed = countPixels(CameraSide.LEFT, RGBColor.RED);
-        int leftBlue = countPixels(CameraSide.LEFT, RGBColor.BLUE);
+        PixelCounts counts = countPixels(fullClassifier);
 
-        int rightRed = countPixels(CameraSide.RIGHT, RGBColor.RED);
-        int rightBlue = countPixels(CameraSide.RIGHT, RGBColor.BLUE);
-
-
-        if (leftRed > leftBlue && rightBlue > rightRed) {
-            return JewelState.RED;
-        } else if (leftBlue > leftRed && rightRed > rightBlue) {
-            return JewelState.BLUE;
-        } else {
+        if (counts == null) {
             return JewelState.UNKNOWN;
         }
+
+        return counts.jewelAt(CameraSide.LEFT, CameraSide.RIGHT);
     }
 
     /**
@@ -306,25 +380,134 @@ public class VuforiaTracker {
      * @return JewelState - the jewel closer to the top of the camera.
      */
     public JewelState jewelSearch_BottomLeft() {
-        leftRed = countPixels(CameraSide.BOTTOMLEFTLEFT, RGBColor.RED);
-        leftBlue = countPixels(CameraSide.BOTTOMLEFTLEFT, RGBColor.BLUE);
+        PixelCounts counts = countPixels(bottomLeftClassifier);
 
-        rightRed = countPixels(CameraSide.BOTTOMLEFTRIGHT, RGBColor.RED);
-        rightBlue = countPixels(CameraSide.BOTTOMLEFTRIGHT, RGBColor.BLUE);
-
-        //If any of the values are -1 (An error value) then return null
-        if (leftRed == -1 || leftBlue == -1 || rightRed == -1 || rightBlue == -1) {
+        //If a frame could not be grabbed then return null
+        if (counts == null) {
             return null;
         }
 
+        return bottomLeftJewel(counts);
+    }
+
+    /**
+     * Keep the Bottom Left counts (see getLeftRed() etc.) and find the jewel from them.
+     *
+     * @param counts - The counts of the bottom left classifier.
+     * @return JewelState - the jewel closer to the top of the camera.
+     */
+    private JewelState bottomLeftJewel(PixelCounts counts) {
+        leftRed = counts.getRed(CameraSide.BOTTOMLEFTLEFT);
+        leftBlue = counts.getBlue(CameraSide.BOTTOMLEFTLEFT);
+        rightRed = counts.getRed(CameraSide.BOTTOMLEFTRIGHT);
+        rightBlue = counts.getBlue(CameraSide.BOTTOMLEFTRIGHT);
+
         //Return the enumeration (JewelState) value for the sensed jewel.
-        if (leftRed > leftBlue && rightBlue > rightRed) {
-            return JewelState.RED;
-        } else if (leftBlue > leftRed && rightRed > rightBlue) {
-            return JewelState.BLUE;
-        } else {
-            return JewelState.UNKNOWN;
+        return counts.jewelAt(CameraSide.BOTTOMLEFTLEFT, CameraSide.BOTTOMLEFTRIGHT);
+    }
+
+    /**
+     * Search for the jewel pair anywhere in the frame by finding the red and blue blobs shaped like
+     * jewels (see {@link BlobDetector}), rather than by counting pixels in fixed sections. Tape and
+     * balancing stones are not counted as jewels.
+     *
+     * @return JewelState - the jewel closer to the top of the camera, or null if a frame could not be grabbed.
+     */
+    public JewelState jewelSearch_Blobs() {
+        Rgb565Frame frame = awaitJewelFrame();
+
+        if (frame == null) { return null; }
+
+        try {
+            frameReader.wrap(frame);
+            blobDetector.detect(frameReader);
+            return blobDetector.jewelAtLeft();
+        } finally {
+            frame.close();
+        }
+    }
+
+    /**
+     * Look at one frame for the voting search. The jewel pair is looked for by its blobs first (see
+     * jewelSearch_Blobs()), which tape and balancing stones do not fool. If no pair is found, or the
+     * blob search is off, the Bottom Left quadrant of the same frame is counted instead (see
+     * jewelSearch_BottomLeft()).
+     *
+     * @return JewelState - the jewel closer to the top of the camera, or null if a frame could not be grabbed.
+     */
+    private JewelState jewelSearch_BlobsOrBottomLeft() {
+        Rgb565Frame frame = awaitJewelFrame();
+
+        if (frame == null) { return null; }
+
+        try {
+            frameReader.wrap(frame);
+
+            if (blobSearch) {
+                blobDetector.detect(frameReader);
+                JewelState jewel = blobDetector.jewelAtLeft();
+
+                if (jewel != JewelState.UNKNOWN) { return jewel; }
+            }
+
+            return bottomLeftJewel(bottomLeftClassifier.classify(frameReader));
+        } finally {
+            frame.close();
+        }
+    }
+
+    /**
+     * Turn looking for the jewels' blobs in the voting search on or off. When off, the voting search
+     * only counts the Bottom Left quadrant, as it used to.
+     *
+     * @param blobSearch - Whether to look for the jewel pair's blobs first.
+     */
+    public void setBlobSearch(boolean blobSearch) { this.blobSearch = blobSearch; }
+
+    /**
+     * Search for the Jewel over as many frames as it takes to be sure of it (see {@link JewelVoter}),
+     * looking at each frame with jewelSearch_BlobsOrBottomLeft(). The search ends as soon as the
+     * confidence reaches the given threshold, or when the deadline passes, whichever comes first.
+     *
+     * @param confidence - [0, 1), How sure the search must be before it ends early.
+     * @param deadline   - The longest time to search, in milliseconds.
+     * @return JewelState - The jewel with the most votes, or UNKNOWN if no frame leaned either way.
+     */
+    public JewelState jewelSearch_Voting(double confidence, int deadline) {
+        JewelVoter voter = new JewelVoter(confidence);
+        long endTime = System.nanoTime() / 1000000 + deadline;
+
+        reset();
+
+        while (!voter.isConfident() && System.nanoTime() / 1000000 < endTime && !Thread.currentThread().isInterrupted()) {
+            voter.addVote(jewelSearch_BlobsOrBottomLeft());
+
+            lastJewel = voter.getLeader();
+            lastConfidence = voter.getConfidence();
         }
+
+        return voter.getLeader();
+    }
+
+    /** @return [0, 1) - How sure the last call to jewelSearch_Voting() was of its jewel. */
+    public double getLastConfidence() { return lastConfidence; }
+
+    /** The same as jewelSearch_Voting(), so that the camera can be used as a {@link JewelDetector}. */
+    @Override
+    public JewelState findJewel(double confidence, int deadline) {
+        return jewelSearch_Voting(confidence, deadline);
+    }
+
+    @Override
+    public JewelState getJewel() { return lastJewel; }
+
+    @Override
+    public double getConfidence() { return lastConfidence; }
+
+    @Override
+    public void reset() {
+        lastJewel = JewelState.UNKNOWN;
+        lastConfidence = 0;
     }
 
     public int getLeftRed() { return leftRed; }
@@ -10,9 +10,11 @@ import com.qualcomm.robotcore.hardware.Servo;
 import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.Range;
 
+import org.blueshift.drivesupport.EncoderMove;
 import org.blueshift.drivesupport.Gyroscope;
 import org.blueshift.drivesupport.TankDrive;
 import org.blueshift.vision.JewelState;
+import org.blueshift.vision.VisionSearch;
 import org.blueshift.vision.VuforiaTracker;
 import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark;
 
@@ -37,7 +39,9 @@ public class Auto_RCKeyJewel extends LinearOpMode {
     //Instance variables set in the setDefaultFunctions() function
     private int ticksOffPlatform, ticksToFirstColumn, ticksToSecondColumn, ticksToThirdColumn, ticksToGlyphBox;
     private double LSERVO_DOWN_POSITION, LSERVO_UP_POSITION, RSERVO_UP_POSITION, RSERVO_DOWN_POSITION, OVERSHOOT_CONSTANT;
-    private int slightTurnTimeout, SEARCHING_DELAY;
+    private int slightTurnTimeout, SEARCHING_DELAY, JEWEL_SEARCH_DELAY;
+    private double JEWEL_CONFIDENCE;
+    private boolean RECORD_JEWEL_FRAMES, USE_MOTION_PROFILES, USE_JEWEL_BLOBS;
 
     //Gyroscope object and working information
     private Gyroscope gyroscope;
@@ -49,8 +53,9 @@ public class Auto_RCKeyJewel extends LinearOpMode {
     private DcMotor glyphLeft, glyphRight, conveyorLeft, conveyorRight;
     private Servo jewelServoR, jewelServoL;
 
-    //The tracker that will find the jewel and the pictograph
+    //The tracker that will find the jewel and the pictograph, and the search it runs for both
     private VuforiaTracker vuforiaTracker;
+    private VisionSearch visionSearch;
 
     //Keeping track of the pictograph and the jewel states
     private JewelState jewelAtBack;
@@ -85,7 +90,6 @@ public class Auto_RCKeyJewel extends LinearOpMode {
 
         telemetry.clear();
         telemetry.addData("Jewel", jewelAtBack);
-        telemetry.addData("Pictograph", foundVuMark);
         telemetry.update();
 
         jewelServoR.setPosition(RSERVO_DOWN_POSITION);
@@ -113,9 +117,24 @@ public class Auto_RCKeyJewel extends LinearOpMode {
                 break;
         }
 
-        //Leave the Board
+        //Leave the Board, keeping the driver up to date on the pictograph search on the way
         sleep(75);
-        tankDrive.driveWithEncoders(0.6, ticksOffPlatform);
+        EncoderMove leaveBoard = USE_MOTION_PROFILES
+                ? tankDrive.startProfiledMove(ticksOffPlatform, TankDrive.DEFAULT_ENCODER_TIMEOUT_MS)
+                : tankDrive.startEncoderMove(0.6, ticksOffPlatform, TankDrive.DEFAULT_ENCODER_TIMEOUT_MS);
+
+        while (opModeIsActive() && !leaveBoard.update()) {
+            telemetry.addData("Pictograph", visionSearch.isVuMarkDone() ? "Found" : "Searching");
+            telemetry.update();
+            idle();
+        }
+
+        //Stop right away if the OpMode was stopped on the way
+        leaveBoard.cancel();
+
+        //The pictograph search kept running while the jewel was knocked off
+        foundVuMark = visionSearch.getVuMark();
+        telemetry.addData("Pictograph", foundVuMark);
 
         //Switch through the different pictograph options and perform the required actions (See goToColumn).
         switch (foundVuMark) {
@@ -149,22 +168,37 @@ public class Auto_RCKeyJewel extends LinearOpMode {
     private void goToColumn(int index) {
         switch (index) {
             case 1:
-                tankDrive.driveWithEncoders(0.3, ticksToFirstColumn);
+                driveTo(0.3, ticksToFirstColumn);
                 break;
             case 2:
-                tankDrive.driveWithEncoders(0.3, ticksToSecondColumn);
+                driveTo(0.3, ticksToSecondColumn);
                 break;
             case 3:
-                tankDrive.driveWithEncoders(0.3, ticksToThirdColumn);
+                driveTo(0.3, ticksToThirdColumn);
                 break;
             default:
-                tankDrive.driveWithEncoders(0.3, ticksToSecondColumn);
+                driveTo(0.3, ticksToSecondColumn);
                 break;
         }
 
         //Turn left towards the blue glyph box and drive.
         turn(1);
-        tankDrive.driveWithEncoders(0.5, ticksToGlyphBox);
+        driveTo(0.5, ticksToGlyphBox);
+    }
+
+    /**
+     * Drive straight for a number of encoder ticks, either at a fixed power or, with
+     * USE_MOTION_PROFILES, along a motion profile (see TankDrive.driveWithProfile()).
+     *
+     * @param power - The power to drive at when not following a profile.
+     * @param ticks - How far to drive, in encoder ticks.
+     */
+    private void driveTo(double power, int ticks) {
+        if (USE_MOTION_PROFILES) {
+            tankDrive.driveWithProfile(ticks);
+        } else {
+            tankDrive.driveWithEncoders(power, ticks);
+        }
     }
 
     /**
@@ -241,6 +275,15 @@ public class Auto_RCKeyJewel extends LinearOpMode {
         RSERVO_DOWN_POSITION = 0.6;
 
         SEARCHING_DELAY = 3600;
+        JEWEL_SEARCH_DELAY = 2000;
+        JEWEL_CONFIDENCE = 0.7;
+        //Turn on to save what the camera sees during the jewel search (See VuforiaTracker.startRecording())
+        RECORD_JEWEL_FRAMES = false;
+        //Look for the jewels' blobs before counting the Bottom Left quadrant (See VuforiaTracker.setBlobSearch())
+        USE_JEWEL_BLOBS = true;
+        //The profiles' speed and limits (see TankDrive) are estimates; keep the tested fixed powers
+        //until they are measured on the robot
+        USE_MOTION_PROFILES = false;
 
         slightTurnTimeout = 2500;
 
@@ -297,6 +340,7 @@ public class Auto_RCKeyJewel extends LinearOpMode {
 
         int cameraMonitorViewId = hardwareMap.appContext.getResources().getIdentifier("cameraMonitorViewId", "id", hardwareMap.appContext.getPackageName());
         vuforiaTracker = new VuforiaTracker(cameraMonitorViewId);
+        vuforiaTracker.setBlobSearch(USE_JEWEL_BLOBS);
 
         //Notify the Driver
         telemetry.addData("Status", "Init in " +  runtime.seconds() + " seconds");
@@ -306,21 +350,18 @@ public class Auto_RCKeyJewel extends LinearOpMode {
     }
 
     /**
-     * Use the vuforia tracker to find the pictograph and the jewel. An error-checking timeout is
-     * built into the jewel finding function incase the camera fails.
+     * Use the vuforia tracker to start searching for the pictograph and the jewel at the same time,
+     * and wait for only the jewel. The pictograph search keeps going in the background until it is
+     * needed after leaving the board. The jewel search ends once it is JEWEL_CONFIDENCE sure (or goes
+     * with the leading jewel after JEWEL_SEARCH_DELAY); the pictograph search gives up (UNKNOWN)
+     * after SEARCHING_DELAY.
      */
     public void searchForPictographAndJewel() {
-        vuforiaTracker.initPictographTracking();
-        foundVuMark = vuforiaTracker.trackPictograph(SEARCHING_DELAY);
-        vuforiaTracker.quitPictographTracking();
-
-        vuforiaTracker.initJewelTracking();
-        jewelAtBack = vuforiaTracker.jewelSearch_BottomLeft();
+        //Save what the camera sees during the jewel search to the phone (See VuforiaTracker.startRecording())
+        if (RECORD_JEWEL_FRAMES) { vuforiaTracker.startRecording(); }
 
-        //A timing error-checker previously mentioned above
-        if (jewelAtBack == null) {
-            sleep(1000);
-            jewelAtBack = vuforiaTracker.jewelSearch_BottomLeft();
-        }
+        visionSearch = vuforiaTracker.startSearch(SEARCHING_DELAY, JEWEL_SEARCH_DELAY, JEWEL_CONFIDENCE);
+        jewelAtBack = visionSearch.getJewel();
+        vuforiaTracker.stopRecording();
     }
 }
@@ -3,6 +3,7 @@ package org.firstinspires.ftc.teamcode;
 import com.qualcomm.hardware.bosch.BNO055IMU;
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.hardware.ColorSensor;
 import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.Servo;
@@ -11,7 +12,10 @@ import com.qualcomm.robotcore.util.Range;
 
 import org.blueshift.drivesupport.Gyroscope;
 import org.blueshift.drivesupport.TankDrive;
+import org.blueshift.vision.FusionJewelDetector;
+import org.blueshift.vision.JewelSense_ColorSensor;
 import org.blueshift.vision.JewelState;
+import org.blueshift.vision.VisionSearch;
 import org.blueshift.vision.VuforiaTracker;
 
 /**
@@ -34,7 +38,9 @@ public class Auto_RJewel extends LinearOpMode {
 
     //Instance variables set in the setDefaultFunctions() function
     private double RSERVO_DOWN_POSITION, LSERVO_UP_POSITION, RSERVO_UP_POSITION;
-    private int slightTurnTimeout;
+    private int slightTurnTimeout, JEWEL_SEARCH_DELAY;
+    private double JEWEL_CONFIDENCE;
+    private boolean RECORD_JEWEL_FRAMES, USE_JEWEL_COLOR_SENSOR, JEWEL_SENSOR_OVER_TOP_JEWEL, USE_JEWEL_BLOBS;
 
     //Gyroscope object and working information
     private Gyroscope gyroscope;
@@ -49,6 +55,10 @@ public class Auto_RJewel extends LinearOpMode {
     //The tracker that will find the jewel and the pictograph
     private VuforiaTracker vuforiaTracker;
 
+    //The color sensor on the right jewel arm (the one this OpMode lowers), only used when
+    //USE_JEWEL_COLOR_SENSOR is set
+    private JewelSense_ColorSensor jewelColorSensor;
+
     //Keeping track of the pictograph and the jewel states
     private JewelState jewelAtBack;
 
@@ -83,8 +93,11 @@ public class Auto_RJewel extends LinearOpMode {
         telemetry.addData("Jewel", jewelAtBack);
         telemetry.update();
 
-        jewelServoR.setPosition(RSERVO_DOWN_POSITION);
-        sleep(400);
+        //With the color sensor the arm is already down (see searchForJewel())
+        if (!USE_JEWEL_COLOR_SENSOR) {
+            jewelServoR.setPosition(RSERVO_DOWN_POSITION);
+            sleep(400);
+        }
 
         //SWitch through the different jewel states and perform the necessary actions when it finds it.
         switch (jewelAtBack) {
@@ -141,6 +154,15 @@ public class Auto_RJewel extends LinearOpMode {
         LSERVO_UP_POSITION = 1.0;
         RSERVO_UP_POSITION = 0.0;
 
+        JEWEL_SEARCH_DELAY = 2000;
+        JEWEL_CONFIDENCE = 0.7;
+        //Turn on to save what the camera sees during the jewel search (See VuforiaTracker.startRecording())
+        RECORD_JEWEL_FRAMES = false;
+        //Look for the jewels' blobs before counting the Bottom Left quadrant (See VuforiaTracker.setBlobSearch())
+        USE_JEWEL_BLOBS = true;
+        USE_JEWEL_COLOR_SENSOR = false;
+        //Whether the lowered arm holds its sensor over the jewel the camera calls jewelAtBack
+        JEWEL_SENSOR_OVER_TOP_JEWEL = true;
         slightTurnTimeout = 2500;
     }
 
@@ -190,6 +212,12 @@ public class Auto_RJewel extends LinearOpMode {
 
         int cameraMonitorViewId = hardwareMap.appContext.getResources().getIdentifier("cameraMonitorViewId", "id", hardwareMap.appContext.getPackageName());
         vuforiaTracker = new VuforiaTracker(cameraMonitorViewId);
+        vuforiaTracker.setBlobSearch(USE_JEWEL_BLOBS);
+
+        if (USE_JEWEL_COLOR_SENSOR) {
+            jewelColorSensor = new JewelSense_ColorSensor(hardwareMap.get(ColorSensor.class, "jewelColorR"));
+            jewelColorSensor.setOverTopJewel(JEWEL_SENSOR_OVER_TOP_JEWEL);
+        }
 
         //Notify the Driver
         telemetry.addData("Status", "Init in " +  runtime.seconds() + " seconds");
@@ -198,16 +226,25 @@ public class Auto_RJewel extends LinearOpMode {
     }
 
     /**
-     * Use the vuforia tracker to find the pictograph and the jewel. An error-checking timeout is
-     * built into the jewel finding function incase the camera fails.
+     * Use the vuforia tracker to find the jewel. The search keeps voting on new frames until it is
+     * JEWEL_CONFIDENCE sure of the jewel, or goes with the leading jewel after JEWEL_SEARCH_DELAY.
+     * With USE_JEWEL_COLOR_SENSOR the jewel arm is lowered first and the camera and the color sensor
+     * search together (See FusionJewelDetector), ending as soon as they are sure between them.
      */
     public void searchForJewel() {
-        vuforiaTracker.initJewelTracking();
-        jewelAtBack = vuforiaTracker.jewelSearch_BottomLeft();
+        //Save what the camera sees during the jewel search to the phone (See VuforiaTracker.startRecording())
+        if (RECORD_JEWEL_FRAMES) { vuforiaTracker.startRecording(); }
+
+        if (USE_JEWEL_COLOR_SENSOR) {
+            jewelServoR.setPosition(RSERVO_DOWN_POSITION);
 
-        if (jewelAtBack == null) {
-            sleep(1000);
-            jewelAtBack = vuforiaTracker.jewelSearch_BottomLeft();
+            FusionJewelDetector jewelDetector = new FusionJewelDetector(vuforiaTracker, jewelColorSensor);
+            jewelAtBack = jewelDetector.findJewel(JEWEL_CONFIDENCE, JEWEL_SEARCH_DELAY);
+        } else {
+            VisionSearch visionSearch = vuforiaTracker.startSearch(0, JEWEL_SEARCH_DELAY, JEWEL_CONFIDENCE);
+            jewelAtBack = visionSearch.getJewel();
         }
+
+        vuforiaTracker.stopRecording();
     }
 }
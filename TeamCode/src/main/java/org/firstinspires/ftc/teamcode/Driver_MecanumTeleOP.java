@@ -1,5 +1,6 @@
 package org.firstinspires.ftc.teamcode;
 
+import com.qualcomm.hardware.bosch.BNO055IMU;
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.hardware.DcMotor;
@@ -7,6 +8,9 @@ import com.qualcomm.robotcore.hardware.DcMotorSimple;
 import com.qualcomm.robotcore.hardware.Servo;
 import com.qualcomm.robotcore.util.ElapsedTime;
 
+import org.blueshift.drivesupport.FieldPoint;
+import org.blueshift.drivesupport.Gyroscope;
+import org.blueshift.drivesupport.HeadingPoller;
 import org.blueshift.drivesupport.MecanumDrive;
 import org.blueshift.drivesupport.TankDrive;
 
@@ -33,10 +37,17 @@ import java.util.Properties;
  * conveyor belt system.
  *
  * The Mecanum angle is the angle that the stick is pushed at, and the speed is how hard the
- * stick is pushed.
+ * stick is pushed. The mecanum drive holds its heading with the gyroscope while the left stick is
+ * not turning the robot, so strafes go straight.
+ *
+ * The mecanum drive is field-centric: the angle is taken from the way the robot pointed at the
+ * start, not from the way it points now, so pushing the stick away from the driver always drives
+ * away from the driver. Pressing back on gamepad 1 takes the way the robot points now as the new
+ * forward. The heading is read in the background so that the loop never waits on the gyroscope.
+ * The robot's location on the field (from the wheels' encoders) is shown on the driver station.
  *
  * @author Gabriel Wong
- * @version 2.0
+ * @version 2.2
  */
 
 @SuppressWarnings("FieldCanBeLocal")
@@ -55,6 +66,15 @@ public class Driver_MecanumTeleOP extends OpMode {
     private double speedMultiplier = 1.0;
 
     private boolean SQUARE_TRIGGERS, SQUARE_STICKS;
+    //Off until the heading gains and HEADING_DIRECTION (see MecanumDrive) are measured on the robot;
+    //with the wrong sign the robot turns on its own whenever it drives without rotating
+    private boolean HEADING_HOLD = false;
+    //Off by default so the right stick drives from the robot, as drivers are used to. When on, the
+    //stick drives on the field from where the robot pointed at init or the last gamepad1.back
+    private boolean FIELD_CENTRIC = false;
+
+    private Gyroscope gyroscope;
+    private HeadingPoller headingPoller;
 
     private MecanumDrive mecanumDrive;
     private TankDrive tankDrive;
@@ -123,10 +143,21 @@ public class Driver_MecanumTeleOP extends OpMode {
         jewelServoR.setPosition(0.0);
         jewelServoL.setPosition(1.0);
 
+        //Gyroscope
+        gyroscope = new Gyroscope( hardwareMap.get(BNO055IMU.class, "imu1") );
+        gyroscope.init();
+
         //Create the two different drive objects
-        mecanumDrive = new MecanumDrive(leftBack, leftFront, rightBack, rightFront);
+        mecanumDrive = new MecanumDrive(leftBack, leftFront, rightBack, rightFront, new FieldPoint(), gyroscope);
         tankDrive    = new TankDrive(leftBack, leftFront, rightBack, rightFront);
 
+        headingPoller = new HeadingPoller(gyroscope);
+        headingPoller.start();
+
+        mecanumDrive.setHeadingPoller(headingPoller);
+        mecanumDrive.setHeadingHold(HEADING_HOLD);
+        mecanumDrive.setFieldCentric(FIELD_CENTRIC);
+
         // Tell the driver that initialization is complete.
         telemetry.addData("Status", "Initialized");
     }
@@ -162,6 +193,11 @@ public class Driver_MecanumTeleOP extends OpMode {
         /* ** ** ** ** ** ** ** ** **/
         /*     Drive Train Code     */
         /* ** ** ** ** ** ** ** ** **/
+        //Make the way the robot points now forward (for field-centric driving)
+        if (gamepad1.back) {
+            mecanumDrive.resetHeading();
+        }
+
         if (gamepad1.right_stick_x != 0 || gamepad1.right_stick_y != 0) {
             if ((CONTROLLER_TOLERANCE > gamepad1.right_stick_x && gamepad1.right_stick_x > -CONTROLLER_TOLERANCE) && (CONTROLLER_TOLERANCE > gamepad1.right_stick_y && gamepad1.right_stick_y > -CONTROLLER_TOLERANCE)) { //If the sticks are within a certain value, then it is basically zero.
                 dAngle = 0.0;
@@ -202,8 +238,9 @@ public class Driver_MecanumTeleOP extends OpMode {
 
             mecanumDrive.drive(dAngle, dSpeed * speedMultiplier, dRotation);
         } else if (gamepad1.left_stick_x != 0 || gamepad1.left_stick_y != 0) {
-            //Use the tank drive if Mecanum is not being used
+            //Use the tank drive if Mecanum is not being used. Its turning is kept once Mecanum takes over
             tankDrive.drive(-gamepad1.left_stick_y * speedMultiplier, gamepad1.left_stick_x);
+            mecanumDrive.holdCurrentHeading();
         } else {
             mecanumDrive.stop();
             tankDrive.stop();
@@ -301,8 +338,13 @@ public class Driver_MecanumTeleOP extends OpMode {
             }
         }
 
+        //Keep track of where the robot is on the field
+        mecanumDrive.updateOdometry();
+
         //Generate telemetry with the run time.
         telemetry.addData("Status", "Run Time: " + runtime.toString());
+        telemetry.addData("Location", "(%.1f, %.1f) in", mecanumDrive.getLocation().getX(), mecanumDrive.getLocation().getY());
+        telemetry.addData("Heading", "%.1f (Holding %.1f)", Math.toDegrees(mecanumDrive.getHeading()), Math.toDegrees(mecanumDrive.getTargetHeading()));
         telemetry.update();
     }
 
@@ -311,6 +353,8 @@ public class Driver_MecanumTeleOP extends OpMode {
         mecanumDrive.stop();
         tankDrive.stop();
 
+        headingPoller.stop();
+
         mecanumDrive = null;
         tankDrive = null;
     }
@@ -0,0 +1,98 @@
+package org.blueshift.vision.benchmark;
+
+import org.blueshift.vision.ReplayFrameSource;
+import org.blueshift.vision.Rgb565Frame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+/**
+ * Frames for the benchmarks to classify. A frame is either made up ("synthetic") or read from a
+ * recording of the phone's camera (see FrameRecorder).
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+final class BenchmarkFrames {
+    //The size of the frames Vuforia hands out on the robot controller phones
+    static final int WIDTH = 1280;
+    static final int HEIGHT = 720;
+
+    private BenchmarkFrames() {}
+
+    /**
+     * @param source - "synthetic", or the path of a recorded frame.
+     * @return ShortBuffer - The frame's pixels; its width and height are the first two entries of size.
+     */
+    static ShortBuffer load(String source, int[] size) throws IOException {
+        if (source.equals("synthetic")) {
+            size[0] = WIDTH;
+            size[1] = HEIGHT;
+            return synthetic(WIDTH, HEIGHT);
+        } else {
+            return recorded(new File(source), size);
+        }
+    }
+
+    /**
+     * Draw a red jewel on the left half and a blue jewel on the right half of a noisy grey frame,
+     * which is roughly what the phone sees from the balancing stone.
+     */
+    static ShortBuffer synthetic(int width, int height) {
+        short[] pixels = new short[width * height];
+        Random random = new Random(5549);
+
+        int radius = height / 4;
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = 12 + random.nextInt(6), green = 24 + random.nextInt(12), blue = 12 + random.nextInt(6);
+
+                int leftX = x - width / 4, rightX = x - 3 * width / 4, jewelY = y - height / 3;
+
+                if (leftX * leftX + jewelY * jewelY < radius * radius) {
+                    red = 24 + random.nextInt(8);
+                    green = 8 + random.nextInt(8);
+                    blue = 4 + random.nextInt(4);
+                } else if (rightX * rightX + jewelY * jewelY < radius * radius) {
+                    red = 2 + random.nextInt(4);
+                    green = 16 + random.nextInt(12);
+                    blue = 22 + random.nextInt(10);
+                }
+
+                pixels[y * width + x] = (short) ((red << 11) | (green << 5) | blue);
+            }
+        }
+
+        return ShortBuffer.wrap(pixels);
+    }
+
+    /**
+     * Read the first frame of a recording made by the robot's FrameRecorder.
+     */
+    static ShortBuffer recorded(File file, int[] size) throws IOException {
+        ReplayFrameSource replay = new ReplayFrameSource(file);
+
+        try {
+            Rgb565Frame frame = replay.nextFrame();
+
+            if (frame == null) {
+                throw new IOException(file + " does not hold any frames");
+            }
+
+            size[0] = frame.getWidth();
+            size[1] = frame.getHeight();
+
+            short[] pixels = new short[size[0] * size[1]];
+            System.arraycopy(frame.getPixels(), 0, pixels, 0, pixels.length);
+            frame.close();
+
+            return ShortBuffer.wrap(pixels);
+        } finally {
+            replay.close();
+        }
+    }
+}
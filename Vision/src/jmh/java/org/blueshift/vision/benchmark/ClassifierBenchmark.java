@@ -0,0 +1,140 @@
+package org.blueshift.vision.benchmark;
+
+import org.blueshift.vision.AdaptiveJewelClassifier;
+import org.blueshift.vision.BlobDetector;
+import org.blueshift.vision.CameraSide;
+import org.blueshift.vision.ColorClassTable;
+import org.blueshift.vision.FrameDecimator;
+import org.blueshift.vision.FrameRegion;
+import org.blueshift.vision.JewelClassifier;
+import org.blueshift.vision.PixelCounts;
+import org.blueshift.vision.Rgb565Reader;
+import org.blueshift.vision.StripedJewelClassifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long one frame takes to go through each stage of the jewel search (ns/frame). Run
+ * with -prof gc (the jmh task does) to also see the bytes allocated per frame, which should be 0
+ * apart from the PixelCounts handed back.
+ *
+ * @author Gabriel Wong
+ * @version 1.1
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClassifierBenchmark {
+    //"synthetic", or the path of a recorded frame
+    @Param({"synthetic"})
+    public String frame;
+
+    @Param({"1", "2", "4", "8"})
+    public int decimation;
+
+    @Param({"1", "2"})
+    public int step;
+
+    private final Rgb565Reader reader = new Rgb565Reader();
+    private final FrameDecimator decimator = new FrameDecimator();
+    private final FrameRegion[] regions = CameraSide.regionsOf(CameraSide.LEFT, CameraSide.RIGHT);
+
+    private BlobDetector blobDetector;
+    private JewelClassifier classifier;
+    private JewelClassifier stripedClassifier;
+    private JewelClassifier adaptiveClassifier;
+    private JewelClassifier adaptiveStripedClassifier;
+    private ExecutorService pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int[] size = new int[2];
+        reader.wrap(BenchmarkFrames.load(frame, size), size[0], size[1], size[0]);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        pool = Executors.newFixedThreadPool(cores);
+
+        blobDetector = new BlobDetector(ColorClassTable.jewels(), decimation, 0);
+        classifier = new JewelClassifier(ColorClassTable.jewels(), decimation, step, regions);
+        stripedClassifier = new StripedJewelClassifier(pool, cores, ColorClassTable.jewels(), decimation, step, regions);
+        adaptiveClassifier = new AdaptiveJewelClassifier(ColorClassTable.jewels(), decimation, step, regions);
+        adaptiveStripedClassifier = new StripedJewelClassifier(pool, cores, ColorClassTable.jewels(), decimation, step, true, regions);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public PixelCounts classify() {
+        return classifier.classify(reader);
+    }
+
+    @Benchmark
+    public PixelCounts classifyStriped() {
+        return stripedClassifier.classify(reader);
+    }
+
+    @Benchmark
+    public PixelCounts classifyAdaptive() {
+        return adaptiveClassifier.classify(reader);
+    }
+
+    /** The classifier VuforiaTracker's jewel searches use. */
+    @Benchmark
+    public PixelCounts classifyAdaptiveStriped() {
+        return adaptiveStripedClassifier.classify(reader);
+    }
+
+    @Benchmark
+    public Rgb565Reader decimate() {
+        return decimator.decimate(reader, decimation);
+    }
+
+    @Benchmark
+    public int detectBlobs() {
+        return blobDetector.detect(reader);
+    }
+
+    /**
+     * The way VuforiaTracker.countPixels() used to count one color of one side: one pixel at a time,
+     * scaling every channel to 8 bits first. Kept as the baseline the stages above are compared to.
+     */
+    @Benchmark
+    public int countPixelsBaseline() {
+        int redCount = 0;
+
+        for (int x = 0; x < reader.getWidth() / 2; x += step) {
+            for (int y = 0; y < reader.getHeight(); y += step) {
+                short pixel = reader.get(x, y);
+
+                if (Rgb565Reader.red(pixel) > Rgb565Reader.blue(pixel)) {
+                    redCount++;
+                }
+            }
+        }
+
+        return redCount;
+    }
+}
@@ -0,0 +1,72 @@
+package org.blueshift.vision;
+
+/**
+ * A {@link JewelClassifier} that picks how red (or blue) a pixel must be from the frame itself
+ * instead of counting every pixel where red beats blue. Venue lighting tints the whole frame, so
+ * under warm lights the mat and field walls lean red and a fixed rule counts them as red pixels,
+ * leaving the jewel search UNKNOWN.
+ *
+ * The frame is only read once: the pass that builds its integral image also builds a histogram of
+ * (red - blue) over the part of the frame the regions cover, and Otsu's method picks the cuts from
+ * it (see {@link OtsuThresholds}). Those cuts are used for the NEXT frame, so each frame is counted
+ * with the cuts of the one before it. The jewel searches look at a stream of frames of the same
+ * scene, so the cuts are a frame late at most, and every region is still scored with four lookups.
+ * The very first frame counts every leaning pixel, like a plain JewelClassifier.
+ * {@link StripedJewelClassifier} does the same on every core when made adaptive; this class is the
+ * single threaded version of it.
+ *
+ * @author Gabriel Wong
+ * @version 1.2
+ */
+
+public class AdaptiveJewelClassifier extends JewelClassifier {
+    private final OtsuThresholds thresholds = new OtsuThresholds();
+
+    //The cuts the next frame is counted with
+    private int redCut = ColorIntegralImage.NO_CUT, blueCut = ColorIntegralImage.NO_CUT;
+
+    /**
+     * @param colorClasses - The table that decides which pixels can be red and which can be blue.
+     * @param decimation   - Shrink the frame this many times (1, 2, 4 or 8) before classifying it.
+     * @param step         - Look at every step-th pixel (of the shrunk frame) in each direction.
+     * @param regions      - The regions of the frame to count pixels in.
+     */
+    public AdaptiveJewelClassifier(ColorClassTable colorClasses, int decimation, int step, FrameRegion... regions) {
+        super(colorClasses, decimation, step, regions);
+    }
+
+    /**
+     * Shrink the frame (if this classifier decimates) and build its integral image with the cuts
+     * picked from the last frame, along with the histogram the next frame's cuts are picked from.
+     * Then count the pixels of every region that passed the cuts.
+     *
+     * @param frame - A reader pointed at the RGB565 frame to classify.
+     * @return PixelCounts - The red and blue counts of each region.
+     */
+    @Override
+    public PixelCounts classify(Rgb565Reader frame) {
+        Rgb565Reader image = decimator.decimate(frame, decimation);
+        int width = image.getWidth(), height = image.getHeight();
+        int rowsNeeded = rowsNeeded(height);
+
+        thresholds.clear();
+        thresholds.setWindow(firstColumn(width), columnsNeeded(width), firstRow(height), rowsNeeded);
+
+        int[] redCounts = new int[regions.length];
+        int[] blueCounts = new int[regions.length];
+
+        integralImage.build(image, step, 0, rowsNeeded, redCut, blueCut, thresholds);
+        addCounts(integralImage, redCounts, blueCounts);
+
+        redCut = thresholds.redCut();
+        blueCut = thresholds.blueCut();
+
+        return new PixelCounts(regions, redCounts, blueCounts);
+    }
+
+    /** @return int - How far (in 5 bit levels) red must beat blue to count in the next frame. */
+    public int getRedCut() { return redCut; }
+
+    /** @return int - How far (in 5 bit levels) blue must beat red to count in the next frame. */
+    public int getBlueCut() { return blueCut; }
+}
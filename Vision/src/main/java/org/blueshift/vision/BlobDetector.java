@@ -0,0 +1,285 @@
+package org.blueshift.vision;
+
+/**
+ * Finds the connected red and blue regions ("blobs") of a frame, along with the centroid, area and
+ * bounding box of each. Unlike counting the pixels of a fixed half of the frame, this finds the
+ * jewels wherever they are and can tell a round jewel apart from a strip of colored tape or an
+ * alliance colored balancing stone.
+ *
+ * Blobs are labeled in a single pass over the frame. Every red or blue pixel joins the blob of its
+ * left or upper neighbor of the same color, and when both neighbors belong to different blobs those
+ * blobs are merged with a union-find. Only two rows of labels are kept, and each blob's totals are
+ * added up as the pass goes, so the pass runs in linear time and nothing is allocated per pixel.
+ * Every array is reused between frames.
+ *
+ * All of the results are in pixels of the full size frame, even when the frame is shrunk first.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class BlobDetector {
+    //The bounding box of a jewel is about square and a circle fills ~79% of its box
+    private static final double MAX_JEWEL_ASPECT = 2.0;
+    private static final double MIN_JEWEL_FILL = 0.5;
+
+    private final ColorClassTable colorClasses;
+    private final int decimation;
+    private final int minArea;
+
+    private final FrameDecimator decimator = new FrameDecimator();
+
+    //The labels of the row above and of the current row (0 is no blob)
+    private int[] aboveLabels = new int[0];
+    private int[] rowLabels = new int[0];
+
+    //Per label: its union-find parent, color and running totals
+    private int labelCount;
+    private int[] parents = new int[64];
+    private byte[] colors = new byte[64];
+    private int[] areas = new int[64];
+    private long[] xSums = new long[64];
+    private long[] ySums = new long[64];
+    private int[] lefts = new int[64], rights = new int[64], tops = new int[64], bottoms = new int[64];
+
+    //The blobs found in the last frame, as indexes into the label arrays
+    private int blobCount;
+    private int[] blobs = new int[64];
+
+    /**
+     * @param colorClasses - The table that decides which pixels are red and which are blue.
+     * @param decimation   - Shrink the frame this many times (1, 2, 4 or 8) before looking for blobs.
+     * @param minArea      - The smallest blob (in full size pixels) to report.
+     */
+    public BlobDetector(ColorClassTable colorClasses, int decimation, int minArea) {
+        this.colorClasses = colorClasses;
+        this.decimation = decimation;
+        this.minArea = minArea;
+    }
+
+    /**
+     * Find every red and blue blob in a frame.
+     *
+     * @param frame - A reader pointed at the RGB565 frame.
+     * @return int - The number of blobs at least minArea big.
+     */
+    public int detect(Rgb565Reader frame) {
+        Rgb565Reader image = decimator.decimate(frame, decimation);
+        int width = image.getWidth();
+
+        if (rowLabels.length < width) {
+            aboveLabels = new int[width];
+            rowLabels = new int[width];
+        }
+
+        for (int x = 0; x < width; x++) {
+            aboveLabels[x] = 0;
+        }
+
+        labelCount = 0;
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            short[] pixels = image.row(y);
+            int leftLabel = 0;
+
+            for (int x = 0; x < width; x++) {
+                byte color = colorClasses.classOf(pixels[x]);
+                int label = 0;
+
+                if (color == ColorClassTable.RED || color == ColorClassTable.BLUE) {
+                    int aboveLabel = aboveLabels[x];
+
+                    //Provisional labels never change color, so comparing them is enough
+                    boolean joinsLeft = leftLabel != 0 && colors[leftLabel] == color;
+                    boolean joinsAbove = aboveLabel != 0 && colors[aboveLabel] == color;
+
+                    if (joinsLeft) {
+                        label = leftLabel;
+
+                        if (joinsAbove) {
+                            union(leftLabel, aboveLabel);
+                        }
+                    } else if (joinsAbove) {
+                        label = aboveLabel;
+                    } else {
+                        label = newLabel(color, x, y);
+                    }
+
+                    areas[label]++;
+                    xSums[label] += x;
+                    ySums[label] += y;
+                    if (x < lefts[label]) { lefts[label] = x; }
+                    if (x > rights[label]) { rights[label] = x; }
+                    bottoms[label] = y;
+                }
+
+                rowLabels[x] = label;
+                leftLabel = label;
+            }
+
+            int[] swap = aboveLabels;
+            aboveLabels = rowLabels;
+            rowLabels = swap;
+        }
+
+        collectBlobs();
+        return blobCount;
+    }
+
+    /** Start a new blob made of the single pixel (x, y). */
+    private int newLabel(byte color, int x, int y) {
+        int label = ++labelCount;
+
+        if (label == parents.length) {
+            int capacity = parents.length * 2;
+
+            parents = copyOf(parents, capacity);
+            areas = copyOf(areas, capacity);
+            lefts = copyOf(lefts, capacity);
+            rights = copyOf(rights, capacity);
+            tops = copyOf(tops, capacity);
+            bottoms = copyOf(bottoms, capacity);
+
+            byte[] newColors = new byte[capacity];
+            System.arraycopy(colors, 0, newColors, 0, label);
+            colors = newColors;
+
+            long[] newXSums = new long[capacity], newYSums = new long[capacity];
+            System.arraycopy(xSums, 0, newXSums, 0, label);
+            System.arraycopy(ySums, 0, newYSums, 0, label);
+            xSums = newXSums;
+            ySums = newYSums;
+        }
+
+        parents[label] = label;
+        colors[label] = color;
+        areas[label] = 0;
+        xSums[label] = 0;
+        ySums[label] = 0;
+        lefts[label] = x;
+        rights[label] = x;
+        tops[label] = y;
+        bottoms[label] = y;
+
+        return label;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    /** @return int - The label at the root of the given label's blob. */
+    private int find(int label) {
+        while (parents[label] != label) {
+            //Path halving: point every other label on the way at its grandparent
+            parents[label] = parents[parents[label]];
+            label = parents[label];
+        }
+
+        return label;
+    }
+
+    /** Merge two blobs, keeping the older (lower) label as the root. */
+    private void union(int a, int b) {
+        int rootA = find(a), rootB = find(b);
+
+        if (rootA < rootB) {
+            parents[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parents[rootA] = rootB;
+        }
+    }
+
+    /** Add the totals of every label into its root, and list the roots that are big enough. */
+    private void collectBlobs() {
+        for (int label = 1; label <= labelCount; label++) {
+            int root = find(label);
+
+            if (root != label) {
+                areas[root] += areas[label];
+                xSums[root] += xSums[label];
+                ySums[root] += ySums[label];
+                lefts[root] = Math.min(lefts[root], lefts[label]);
+                rights[root] = Math.max(rights[root], rights[label]);
+                tops[root] = Math.min(tops[root], tops[label]);
+                bottoms[root] = Math.max(bottoms[root], bottoms[label]);
+            }
+        }
+
+        blobCount = 0;
+
+        for (int label = 1; label <= labelCount; label++) {
+            if (parents[label] == label && areas[label] * decimation * decimation >= minArea) {
+                if (blobCount == blobs.length) {
+                    blobs = copyOf(blobs, blobs.length * 2);
+                }
+
+                blobs[blobCount++] = label;
+            }
+        }
+    }
+
+    public int getBlobCount() { return blobCount; }
+
+    /** @return byte - ColorClassTable.RED or ColorClassTable.BLUE. */
+    public byte getColor(int blob) { return colors[blobs[blob]]; }
+
+    /** @return int - The number of pixels in the blob. */
+    public int getArea(int blob) { return areas[blobs[blob]] * decimation * decimation; }
+
+    public double getCentroidX(int blob) { return ((double) xSums[blobs[blob]] / areas[blobs[blob]] + 0.5) * decimation; }
+    public double getCentroidY(int blob) { return ((double) ySums[blobs[blob]] / areas[blobs[blob]] + 0.5) * decimation; }
+
+    /** Bounding box edges; left and top are inclusive, right and bottom are exclusive. */
+    public int getLeft(int blob) { return lefts[blobs[blob]] * decimation; }
+    public int getRight(int blob) { return (rights[blobs[blob]] + 1) * decimation; }
+    public int getTop(int blob) { return tops[blobs[blob]] * decimation; }
+    public int getBottom(int blob) { return (bottoms[blobs[blob]] + 1) * decimation; }
+
+    /**
+     * @return boolean - True if the blob is shaped like a jewel: about as wide as it is tall, and
+     * filling most of its bounding box (unlike a strip of tape or the edge of a balancing stone).
+     */
+    public boolean isJewelShaped(int blob) {
+        double width = getRight(blob) - getLeft(blob);
+        double height = getBottom(blob) - getTop(blob);
+
+        return Math.max(width, height) <= MAX_JEWEL_ASPECT * Math.min(width, height)
+                && getArea(blob) >= MIN_JEWEL_FILL * width * height;
+    }
+
+    /**
+     * @param color - ColorClassTable.RED or ColorClassTable.BLUE.
+     * @return int - The biggest jewel shaped blob of that color, or -1 if there is none.
+     */
+    public int largestJewel(byte color) {
+        int largest = -1;
+
+        for (int blob = 0; blob < blobCount; blob++) {
+            if (getColor(blob) == color && isJewelShaped(blob) && (largest < 0 || getArea(blob) > getArea(largest))) {
+                largest = blob;
+            }
+        }
+
+        return largest;
+    }
+
+    /**
+     * Find the jewel pair (the biggest red and blue jewel shaped blobs) and tell which one is on the
+     * left (the top side of the phone).
+     *
+     * @return JewelState - The jewel on the left, or UNKNOWN if either jewel was not found.
+     */
+    public JewelState jewelAtLeft() {
+        int red = largestJewel(ColorClassTable.RED);
+        int blue = largestJewel(ColorClassTable.BLUE);
+
+        if (red < 0 || blue < 0) {
+            return JewelState.UNKNOWN;
+        }
+
+        return getCentroidX(red) < getCentroidX(blue) ? JewelState.RED : JewelState.BLUE;
+    }
+}
@@ -0,0 +1,44 @@
+package org.blueshift.vision;
+
+/**
+ * The sections of the camera frame that the jewel searches look at. Each side is a preset
+ * {@link FrameRegion}; other regions can be made directly when these do not fit. LEFT is the top
+ * side of the phone.
+ *
+ * @author Gabriel Wong
+ * @version 1.2
+ */
+
+public enum CameraSide {
+    LEFT(0.0, 0.5, 0.0, 1.0),
+    RIGHT(0.5, 1.0, 0.0, 1.0),
+    BOTTOMLEFT(0.0, 0.5, 0.0, 1.0 / 3),
+    BOTTOMRIGHT(0.5, 1.0, 0.0, 1.0 / 3),
+    BOTTOMLEFTLEFT(0.0, 0.25, 0.0, 1.0 / 3),
+    BOTTOMLEFTRIGHT(0.25, 0.5, 0.0, 1.0 / 3),
+    BOTTOMRIGHTLEFT(0.5, 0.75, 0.0, 1.0 / 3),
+    BOTTOMRIGHTRIGHT(0.75, 1.0, 0.0, 1.0 / 3);
+
+    private final FrameRegion region;
+
+    CameraSide(double xStart, double xEnd, double yStart, double yEnd) {
+        this.region = new FrameRegion(name(), xStart, xEnd, yStart, yEnd);
+    }
+
+    /** @return FrameRegion - The rectangle of the frame this side covers. */
+    public FrameRegion getRegion() { return region; }
+
+    /**
+     * @param sides - Any number of sides.
+     * @return FrameRegion[] - The region of each side, in the same order.
+     */
+    public static FrameRegion[] regionsOf(CameraSide... sides) {
+        FrameRegion[] regions = new FrameRegion[sides.length];
+
+        for (int i = 0; i < sides.length; i++) {
+            regions[i] = sides[i].getRegion();
+        }
+
+        return regions;
+    }
+}
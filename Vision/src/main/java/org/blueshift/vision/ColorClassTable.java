@@ -0,0 +1,134 @@
+package org.blueshift.vision;
+
+/**
+ * A lookup table holding the color class of every one of the 65,536 RGB565 pixel values. The table
+ * is filled in once when it is made (from HSV thresholds, or from the old red vs blue rule), so that
+ * classifying a pixel in the counting loop is a single array lookup however involved the rule is.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class ColorClassTable {
+    public static final byte NEITHER = 0;
+    public static final byte RED = 1;
+    public static final byte BLUE = 2;
+    public static final byte WHITE = 3;
+    public static final byte GREY = 4;
+
+    private static ColorClassTable jewels, redVersusBlue;
+
+    private final byte[] classes = new byte[1 << 16];
+
+    private ColorClassTable() {}
+
+    /**
+     * The table used to find the jewels unless told otherwise. Red and blue must be saturated enough
+     * to not be the grey field mat or the white of the balancing stone.
+     *
+     * @return ColorClassTable - The shared jewel table.
+     */
+    public static synchronized ColorClassTable jewels() {
+        if (jewels == null) {
+            jewels = fromHsv(25, 180, 260, 0.3f, 0.15f, 0.2f, 0.75f);
+        }
+
+        return jewels;
+    }
+
+    /**
+     * A table matching the rule the jewel search first used: a pixel is red when its red channel is
+     * greater than its blue channel, and blue when the opposite is true. There is no white or grey.
+     *
+     * @return ColorClassTable - The shared red vs blue table.
+     */
+    public static synchronized ColorClassTable redVersusBlue() {
+        if (redVersusBlue == null) {
+            redVersusBlue = new ColorClassTable();
+
+            for (int pixel = 0; pixel < 1 << 16; pixel++) {
+                //Both channels are 5 bits, so they can be compared unscaled
+                int redValue = (pixel >> 11) & 0x1f;
+                int blueValue = pixel & 0x1f;
+
+                if (redValue > blueValue) {
+                    redVersusBlue.classes[pixel] = RED;
+                } else if (blueValue > redValue) {
+                    redVersusBlue.classes[pixel] = BLUE;
+                }
+            }
+        }
+
+        return redVersusBlue;
+    }
+
+    /**
+     * Build a table from HSV thresholds. Pixels with a low saturation are WHITE when they are bright
+     * enough and GREY otherwise. Saturated pixels that are bright enough are RED or BLUE when their
+     * hue falls in that color's range. Everything else is NEITHER.
+     *
+     * @param redHueSpread   - [0, 180], How many degrees away from 0 (either way) a hue is still red.
+     * @param blueHueLow     - [0, 360], The lowest hue (degrees) that is blue.
+     * @param blueHueHigh    - [0, 360], The highest hue (degrees) that is blue.
+     * @param minSaturation  - [0, 1], The lowest saturation that is red or blue.
+     * @param minValue       - [0, 1], The lowest value (brightness) that is red or blue.
+     * @param greySaturation - [0, 1], Saturations below this are white or grey.
+     * @param whiteValue     - [0, 1], The lowest value (brightness) of an unsaturated pixel that is white.
+     * @return ColorClassTable - The filled in table.
+     */
+    public static ColorClassTable fromHsv(float redHueSpread, float blueHueLow, float blueHueHigh,
+                                          float minSaturation, float minValue,
+                                          float greySaturation, float whiteValue) {
+        ColorClassTable table = new ColorClassTable();
+
+        for (int pixel = 0; pixel < 1 << 16; pixel++) {
+            float red = ((pixel >> 11) & 0x1f) / 31f;
+            float green = ((pixel >> 5) & 0x3f) / 63f;
+            float blue = (pixel & 0x1f) / 31f;
+
+            float max = Math.max(red, Math.max(green, blue));
+            float min = Math.min(red, Math.min(green, blue));
+            float saturation = max == 0 ? 0 : (max - min) / max;
+
+            if (saturation < greySaturation) {
+                table.classes[pixel] = max >= whiteValue ? WHITE : GREY;
+            } else if (saturation >= minSaturation && max >= minValue) {
+                float hue = hue(red, green, blue, max, min);
+
+                if (hue <= redHueSpread || hue >= 360 - redHueSpread) {
+                    table.classes[pixel] = RED;
+                } else if (hue >= blueHueLow && hue <= blueHueHigh) {
+                    table.classes[pixel] = BLUE;
+                }
+            }
+        }
+
+        return table;
+    }
+
+    /** @return float - [0, 360), The hue of the color in degrees. */
+    private static float hue(float red, float green, float blue, float max, float min) {
+        float delta = max - min;
+        float hue;
+
+        if (delta == 0) {
+            return 0;
+        } else if (max == red) {
+            hue = 60 * ((green - blue) / delta);
+        } else if (max == green) {
+            hue = 60 * ((blue - red) / delta + 2);
+        } else {
+            hue = 60 * ((red - green) / delta + 4);
+        }
+
+        return hue < 0 ? hue + 360 : hue;
+    }
+
+    /**
+     * @param pixel - An RGB565 pixel.
+     * @return byte - The color class of the pixel (NEITHER, RED, BLUE, WHITE or GREY).
+     */
+    public byte classOf(short pixel) {
+        return classes[pixel & 0xffff];
+    }
+}
@@ -0,0 +1,195 @@
+package org.blueshift.vision;
+
+/**
+ * Summed-area tables ("integral images") of the red and blue pixels of one frame. Every entry holds
+ * the number of red (or blue) pixels above and to the left of it, so the count inside of ANY
+ * rectangle comes from four lookups no matter how big the rectangle is:
+ *
+ *     count = sum(bottom right) - sum(top right) - sum(bottom left) + sum(top left)
+ *
+ * Both tables are built together in one pass over the frame. A table can also cover just a band of
+ * rows, which lets separate threads build the bands of one frame (see StripedJewelClassifier).
+ *
+ * A red (or blue) pixel can also be made to lean that way by a minimum amount to be counted, with
+ * cuts picked by {@link OtsuThresholds}. The histogram those cuts come from can be filled in by the
+ * same pass that builds the tables, so the frame is only read once.
+ *
+ * @author Gabriel Wong
+ * @version 1.2
+ */
+
+public class ColorIntegralImage {
+    //A cut that every red (or blue) pixel passes
+    public static final int NO_CUT = Integer.MIN_VALUE;
+
+    private final ColorClassTable colorClasses;
+
+    private int[] redSums = new int[0];
+    private int[] blueSums = new int[0];
+
+    private int width, height, step;
+    private int columns, firstRow, rows;
+
+    /**
+     * @param colorClasses - The table that decides which pixels are red and which are blue.
+     */
+    public ColorIntegralImage(ColorClassTable colorClasses) {
+        this.colorClasses = colorClasses;
+    }
+
+    /**
+     * Build the tables for every row of the frame.
+     *
+     * @param frame - A reader pointed at the RGB565 frame.
+     * @param step  - Look at every step-th pixel in each direction. 1 looks at every pixel.
+     */
+    public void build(Rgb565Reader frame, int step) {
+        build(frame, step, 0, frame.getHeight());
+    }
+
+    /**
+     * Build the tables for a band of rows of the frame. Only every step-th pixel (counting from the
+     * top left of the whole frame) is looked at, so that bands line up with each other.
+     *
+     * @param frame - A reader pointed at the RGB565 frame. Only this call may use it.
+     * @param step  - Look at every step-th pixel in each direction. 1 looks at every pixel.
+     * @param yFrom - The first row of the band (inclusive).
+     * @param yTo   - The last row of the band (exclusive).
+     */
+    public void build(Rgb565Reader frame, int step, int yFrom, int yTo) {
+        build(frame, step, yFrom, yTo, NO_CUT, NO_CUT);
+    }
+
+    /**
+     * Build the tables for a band of rows of the frame, only counting red pixels where red beats
+     * blue by at least redCut and blue pixels where blue beats red by at least blueCut.
+     *
+     * @param frame   - A reader pointed at the RGB565 frame. Only this call may use it.
+     * @param step    - Look at every step-th pixel in each direction. 1 looks at every pixel.
+     * @param yFrom   - The first row of the band (inclusive).
+     * @param yTo     - The last row of the band (exclusive).
+     * @param redCut  - How far (in 5 bit levels) red must beat blue, or NO_CUT.
+     * @param blueCut - How far (in 5 bit levels) blue must beat red, or NO_CUT.
+     */
+    public void build(Rgb565Reader frame, int step, int yFrom, int yTo, int redCut, int blueCut) {
+        build(frame, step, yFrom, yTo, redCut, blueCut, null);
+    }
+
+    /**
+     * Build the tables for a band of rows of the frame with the given cuts, adding every red and blue
+     * pixel inside of the histogram's window (see OtsuThresholds.setWindow()) to the histogram as it
+     * goes. Whether a pixel passes the cuts does not matter to the histogram.
+     *
+     * @param frame     - A reader pointed at the RGB565 frame. Only this call may use it.
+     * @param step      - Look at every step-th pixel in each direction. 1 looks at every pixel.
+     * @param yFrom     - The first row of the band (inclusive).
+     * @param yTo       - The last row of the band (exclusive).
+     * @param redCut    - How far (in 5 bit levels) red must beat blue, or NO_CUT.
+     * @param blueCut   - How far (in 5 bit levels) blue must beat red, or NO_CUT.
+     * @param histogram - The histogram to add to, or null for none.
+     */
+    public void build(Rgb565Reader frame, int step, int yFrom, int yTo, int redCut, int blueCut, OtsuThresholds histogram) {
+        this.width = frame.getWidth();
+        this.height = frame.getHeight();
+        this.step = step;
+
+        //Everything below is in sampled pixels rather than frame pixels
+        columns = sampled(width);
+        firstRow = sampled(yFrom);
+        rows = Math.max(0, sampled(yTo) - firstRow);
+
+        int tableWidth = columns + 1;
+        int size = tableWidth * (rows + 1);
+
+        if (redSums.length < size) {
+            redSums = new int[size];
+            blueSums = new int[size];
+        }
+
+        //The first row of the table is all zeros
+        for (int column = 0; column < tableWidth; column++) {
+            redSums[column] = 0;
+            blueSums[column] = 0;
+        }
+
+        for (int row = 0; row < rows; row++) {
+            int y = (firstRow + row) * step;
+            short[] pixels = frame.row(y);
+
+            //The sampled columns of this row that go into the histogram, if any
+            int histogramFrom = 0, histogramTo = 0;
+
+            if (histogram != null && y >= histogram.getYFrom() && y < histogram.getYTo()) {
+                histogramFrom = sampled(histogram.getXFrom());
+                histogramTo = Math.min(sampled(histogram.getXTo()), columns);
+            }
+
+            int above = row * tableWidth;
+            int here = above + tableWidth;
+            int rowRed = 0, rowBlue = 0;
+
+            redSums[here] = 0;
+            blueSums[here] = 0;
+
+            for (int column = 0; column < columns; column++) {
+                short pixel = pixels[column * step];
+                byte colorClass = colorClasses.classOf(pixel);
+
+                if (colorClass == ColorClassTable.RED || colorClass == ColorClassTable.BLUE) {
+                    int difference = OtsuThresholds.difference(pixel);
+
+                    if (colorClass == ColorClassTable.RED) {
+                        if (difference >= redCut) { rowRed++; }
+                    } else if (-difference >= blueCut) {
+                        rowBlue++;
+                    }
+
+                    if (column >= histogramFrom && column < histogramTo) {
+                        histogram.addDifference(difference);
+                    }
+                }
+
+                redSums[here + column + 1] = redSums[above + column + 1] + rowRed;
+                blueSums[here + column + 1] = blueSums[above + column + 1] + rowBlue;
+            }
+        }
+    }
+
+    /** @return The number of sampled pixels before the given frame position. */
+    private int sampled(int position) {
+        return (position + step - 1) / step;
+    }
+
+    /** @return The number of red pixels inside of the region (and inside of the band that was built). */
+    public int countRed(FrameRegion region) {
+        return count(redSums, region);
+    }
+
+    /** @return The number of blue pixels inside of the region (and inside of the band that was built). */
+    public int countBlue(FrameRegion region) {
+        return count(blueSums, region);
+    }
+
+    /**
+     * Total a table over a region with four lookups. The region is clipped to the built band.
+     *
+     * @param sums   - The table to total.
+     * @param region - The region to total.
+     * @return int - The number of pixels inside of the region.
+     */
+    private int count(int[] sums, FrameRegion region) {
+        int left = sampled(region.xStart(width));
+        int right = sampled(region.xEnd(width));
+        int top = Math.max(sampled(region.yStart(height)) - firstRow, 0);
+        int bottom = Math.min(sampled(region.yEnd(height)) - firstRow, rows);
+
+        if (right <= left || bottom <= top) {
+            return 0;
+        }
+
+        int tableWidth = columns + 1;
+
+        return sums[bottom * tableWidth + right] - sums[top * tableWidth + right]
+                - sums[bottom * tableWidth + left] + sums[top * tableWidth + left];
+    }
+}
@@ -0,0 +1,239 @@
+package org.blueshift.vision;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A frame recording (see {@link FrameRecording}) opened for random access. The file is memory
+ * mapped rather than read, so every frame is a view straight into the file's pages: nothing is
+ * copied onto the heap and the operating system only pages in the frames that are looked at. This
+ * makes it possible to rerun a detector over thousands of recorded frames in seconds.
+ *
+ * A single mapping can't be larger than 2 GB, so the file is mapped in segments that each hold
+ * whole frames. An index of where every frame starts is built when the corpus is opened.
+ *
+ * @author Gabriel Wong
+ * @version 1.1
+ */
+
+public class FrameCorpus {
+    //The largest segment mapped at once
+    private static final long MAX_SEGMENT_BYTES = 1 << 30;
+
+    private final File file;
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+    //The index, one entry per frame
+    private int frameCount;
+    private int[] segmentOf = new int[16];
+    private int[] offsetInSegment = new int[16];
+    private int[] widths = new int[16];
+    private int[] heights = new int[16];
+    private long[] timestamps = new long[16];
+
+    /**
+     * Map the recording and index its frames. A frame cut off by the end of the file (a recording
+     * that was still being written) is left out.
+     *
+     * @param file - A recording made by a FrameRecorder.
+     */
+    public FrameCorpus(File file) throws IOException {
+        this.file = file;
+
+        FileChannel channel = new FileInputStream(file).getChannel();
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FrameRecording.FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long size = channel.size();
+
+            header.limit(FrameRecording.FILE_HEADER_BYTES);
+            if (!readFully(channel, header, 0) || header.getInt(0) != FrameRecording.MAGIC
+                    || header.getInt(4) != FrameRecording.VERSION) {
+                throw new IOException(file + " is not a version " + FrameRecording.VERSION + " frame recording");
+            }
+
+            long segmentStart = FrameRecording.FILE_HEADER_BYTES;
+            long position = segmentStart;
+            int segmentFirstFrame = 0;
+
+            while (true) {
+                header.clear();
+                if (!readFully(channel, header, position)) { break; }
+
+                int width = header.getInt(8);
+                int height = header.getInt(12);
+                long frameBytes = FrameRecording.FRAME_HEADER_BYTES + 2L * width * height;
+
+                //A bad size means the file is damaged, and nothing after it can be found
+                if (width <= 0 || height <= 0 || frameBytes > MAX_SEGMENT_BYTES) {
+                    throw new IOException(file + ": frame " + frameCount + " (at byte " + position
+                            + ") has an impossible size of " + width + "x" + height);
+                }
+
+                if (position + frameBytes > size) { break; }
+
+                //Start a new segment if this frame would not fit in the current one
+                if (position + frameBytes - segmentStart > MAX_SEGMENT_BYTES && frameCount > segmentFirstFrame) {
+                    segments.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, position - segmentStart));
+                    segmentStart = position;
+                    segmentFirstFrame = frameCount;
+                }
+
+                addToIndex(segments.size(), (int) (position - segmentStart) + FrameRecording.FRAME_HEADER_BYTES,
+                        width, height, header.getLong(0));
+                position += frameBytes;
+            }
+
+            if (position > segmentStart) {
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, position - segmentStart));
+            }
+        } finally {
+            //The mappings stay valid after the channel is closed
+            channel.close();
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) { return false; }
+            position += read;
+        }
+
+        return true;
+    }
+
+    private void addToIndex(int segment, int offset, int width, int height, long timestamp) {
+        if (frameCount == segmentOf.length) {
+            int capacity = frameCount * 2;
+
+            segmentOf = copyOf(segmentOf, capacity);
+            offsetInSegment = copyOf(offsetInSegment, capacity);
+            widths = copyOf(widths, capacity);
+            heights = copyOf(heights, capacity);
+
+            long[] newTimestamps = new long[capacity];
+            System.arraycopy(timestamps, 0, newTimestamps, 0, frameCount);
+            timestamps = newTimestamps;
+        }
+
+        segmentOf[frameCount] = segment;
+        offsetInSegment[frameCount] = offset;
+        widths[frameCount] = width;
+        heights[frameCount] = height;
+        timestamps[frameCount] = timestamp;
+        frameCount++;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    /**
+     * Get a frame by its index. This only makes a view of the mapped file; no pixels are copied.
+     *
+     * @param index - [0, size()), The frame to get.
+     * @return Frame - The frame.
+     */
+    public Frame get(int index) {
+        if (index < 0 || index >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + index + " of " + frameCount);
+        }
+
+        //Each view keeps its own position, so frames can be read from any number of threads
+        ByteBuffer bytes = segments.get(segmentOf[index]).duplicate();
+        bytes.position(offsetInSegment[index]);
+        bytes.limit(offsetInSegment[index] + 2 * widths[index] * heights[index]);
+
+        ShortBuffer pixels = bytes.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+
+        return new Frame(index, pixels, widths[index], heights[index], timestamps[index]);
+    }
+
+    public int size() { return frameCount; }
+    public File getFile() { return file; }
+
+    /**
+     * Visit every frame of the corpus, split between several threads. Each visitor is only ever
+     * used by one thread at a time, so it can keep its own (not thread safe) classifier and
+     * results. Threads take the next unvisited frame as they finish their last one, so a slow frame
+     * does not hold the others up.
+     *
+     * @param pool     - The threads to visit frames on.
+     * @param visitors - One visitor per thread.
+     */
+    public void forEach(ExecutorService pool, List<? extends Visitor> visitors) throws InterruptedException {
+        final AtomicInteger nextFrame = new AtomicInteger();
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+
+        for (final Visitor visitor : visitors) {
+            workers.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int index = nextFrame.getAndIncrement(); index < frameCount; index = nextFrame.getAndIncrement()) {
+                        visitor.visit(get(index));
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> result : pool.invokeAll(workers)) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /** Looks at frames of a corpus, see forEach(). */
+    public interface Visitor {
+        void visit(Frame frame);
+    }
+
+    /** One frame of a corpus: a read only view of its pixels in the mapped file. */
+    public static class Frame implements Rgb565Image {
+        private final int index;
+        private final ShortBuffer pixels;
+        private final int width, height;
+        private final long timestamp;
+
+        Frame(int index, ShortBuffer pixels, int width, int height, long timestamp) {
+            this.index = index;
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.timestamp = timestamp;
+        }
+
+        public int getIndex() { return index; }
+
+        /** @return The time the frame was captured, in milliseconds of System.nanoTime() on the robot. */
+        public long getTimestamp() { return timestamp; }
+
+        @Override
+        public ShortBuffer getBuffer() { return pixels; }
+        @Override
+        public int getWidth() { return width; }
+        @Override
+        public int getHeight() { return height; }
+        @Override
+        public int getStride() { return width; }
+    }
+}
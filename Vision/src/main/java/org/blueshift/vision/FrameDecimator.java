@@ -0,0 +1,122 @@
+package org.blueshift.vision;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Shrinks an RGB565 frame by a power of two (2 for half size, 4 for a quarter, 8 for an eighth)
+ * while reading it. Every output pixel is the average (a box filter) of the factor x factor block of
+ * frame pixels it covers, so small specks of color are smoothed out rather than skipped over. The
+ * output is a small short[] that later stages can scan far faster than the camera's own buffer.
+ * Leftover columns and rows that do not fill a whole block are dropped.
+ *
+ * One decimator is not thread safe, but several decimators can each fill their own rows of the same
+ * output array at the same time.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class FrameDecimator {
+    //Channel totals of each output column for the block row being read, reused between frames. All
+    //three channels are packed into one long (see spread()) so that a pixel is added in one step.
+    private long[] sums = new long[0];
+
+    //Used by decimate(source, factor), which keeps its own output
+    private short[] output = new short[0];
+    private final Rgb565Reader outputReader = new Rgb565Reader();
+
+    /**
+     * @param length - The width or height of the frame.
+     * @param factor - How many times smaller the output is.
+     * @return int - The width or height of the output.
+     */
+    public static int decimatedLength(int length, int factor) {
+        return length / factor;
+    }
+
+    /**
+     * Shrink a whole frame into this decimator's own output array.
+     *
+     * @param source - A reader pointed at the full size frame.
+     * @param factor - How many times smaller the output is (in each direction). 1 returns the source.
+     * @return Rgb565Reader - A reader pointed at the output. It is reused by the next call.
+     */
+    public Rgb565Reader decimate(Rgb565Reader source, int factor) {
+        if (factor == 1) {
+            return source;
+        }
+
+        int width = decimatedLength(source.getWidth(), factor);
+        int height = decimatedLength(source.getHeight(), factor);
+
+        if (output.length < width * height) {
+            output = new short[width * height];
+        }
+
+        decimate(source, factor, output, 0, height);
+        outputReader.wrap(ShortBuffer.wrap(output), width, height, width);
+
+        return outputReader;
+    }
+
+    /**
+     * Shrink a band of a frame into an output array shared with other decimators. Only the output
+     * rows from yFrom to yTo are written, and only the frame rows behind them are read.
+     *
+     * @param source - A reader pointed at the full size frame. Only this call may use it.
+     * @param factor - How many times smaller the output is (in each direction), a power of two.
+     * @param output - The output, decimatedLength(width) pixels per row.
+     * @param yFrom  - The first output row to fill (inclusive).
+     * @param yTo    - The last output row to fill (exclusive).
+     */
+    public void decimate(Rgb565Reader source, int factor, short[] output, int yFrom, int yTo) {
+        if (factor < 1 || Integer.bitCount(factor) != 1) {
+            throw new IllegalArgumentException("The decimation factor must be a power of two, not " + factor);
+        }
+
+        int width = decimatedLength(source.getWidth(), factor);
+
+        //Dividing by the factor (or the block's area) is a shift since the factor is a power of two
+        int factorShift = Integer.numberOfTrailingZeros(factor);
+        int areaShift = 2 * factorShift;
+
+        if (sums.length < width) {
+            sums = new long[width];
+        }
+
+        for (int y = yFrom; y < yTo; y++) {
+            for (int x = 0; x < width; x++) {
+                sums[x] = 0;
+            }
+
+            for (int sourceY = y * factor; sourceY < (y + 1) * factor; sourceY++) {
+                short[] pixels = source.row(sourceY);
+
+                for (int sourceX = 0; sourceX < width << factorShift; sourceX++) {
+                    sums[sourceX >> factorShift] += spread(pixels[sourceX]);
+                }
+            }
+
+            int rowStart = y * width;
+
+            for (int x = 0; x < width; x++) {
+                long sum = sums[x];
+
+                output[rowStart + x] = (short) ((((sum >> 40) & 0xfffff) >> areaShift) << 11
+                        | (((sum >> 20) & 0xfffff) >> areaShift) << 5
+                        | ((sum & 0xfffff) >> areaShift));
+            }
+        }
+    }
+
+    /**
+     * Move the channels of a pixel apart, 20 bits each, so that whole blocks of pixels (up to 2^14
+     * of them) can be added together without the channels running into each other.
+     *
+     * @param pixel - An RGB565 pixel.
+     * @return long - Red in bits 40 and up, green in bits 20 and up, blue in bits 0 and up.
+     */
+    private static long spread(short pixel) {
+        return ((long) (pixel & 0xf800) << 29) | ((pixel & 0x07e0) << 15) | (pixel & 0x001f);
+    }
+}
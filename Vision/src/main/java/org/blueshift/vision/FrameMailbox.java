@@ -0,0 +1,125 @@
+package org.blueshift.vision;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free, single slot "mailbox" between the thread that captures camera frames and the thread
+ * that reads them. The capture thread fills frames and publishes them; only the newest published
+ * frame is kept, and anything older is recycled immediately. Readers take the newest frame without
+ * ever blocking the capture thread (or being blocked by it).
+ *
+ * Frames are pooled: once a reader is done with a frame it closes it, and the memory is reused for
+ * a later frame instead of being garbage collected. The pool starts with POOL_SIZE frames, one for
+ * the mailbox, one being filled and one being read, so the frame in the mailbox never has to be
+ * taken back to fill.
+ *
+ * @author Gabriel Wong
+ * @version 1.2
+ */
+
+public class FrameMailbox implements FrameSource {
+    private final AtomicReference<Rgb565Frame> latest = new AtomicReference<Rgb565Frame>();
+    private final ConcurrentLinkedQueue<Rgb565Frame> pool = new ConcurrentLinkedQueue<Rgb565Frame>();
+
+    //How long to sleep between checks when waiting for a frame
+    private static final long POLL_INTERVAL_MS = 2;
+
+    //The frames made up front: the one in the mailbox, the one being filled and the one being read
+    public static final int POOL_SIZE = 3;
+
+    public FrameMailbox() {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool.offer(new Rgb565Frame(this));
+        }
+    }
+
+    /**
+     * Get an empty frame for the capture thread to fill. A pooled frame is used when one is free;
+     * otherwise (readers are holding on to frames) a new one is made. The frame waiting in the
+     * mailbox is never taken back, so readers can pick it up while the next one is filled.
+     *
+     * @param width  - The width of the frame that will be filled.
+     * @param height - The height of the frame that will be filled.
+     * @return Rgb565Frame - A frame with room for width * height pixels.
+     */
+    public Rgb565Frame obtain(int width, int height) {
+        Rgb565Frame frame = pool.poll();
+
+        if (frame == null) {
+            frame = new Rgb565Frame(this);
+        }
+
+        frame.resize(width, height);
+        return frame;
+    }
+
+    /**
+     * Make the given frame the newest one in the mailbox, recycling the frame it replaces.
+     *
+     * @param frame     - A frame obtained through obtain() and filled with pixels.
+     * @param timestamp - The time the frame was captured, in milliseconds of System.nanoTime().
+     */
+    public void publish(Rgb565Frame frame, long timestamp) {
+        frame.setTimestamp(timestamp);
+
+        Rgb565Frame replaced = latest.getAndSet(frame);
+
+        if (replaced != null) {
+            pool.offer(replaced);
+        }
+    }
+
+    /**
+     * Take the newest frame out of the mailbox without waiting. The caller owns the returned frame
+     * and must close() it when done.
+     *
+     * @param maxAgeMs - The oldest a frame may be (in milliseconds) to still be returned.
+     * @return Rgb565Frame - The newest frame, or null if there is no new enough frame.
+     */
+    @Override
+    public Rgb565Frame latestFrame(long maxAgeMs) {
+        Rgb565Frame frame = latest.getAndSet(null);
+
+        if (frame != null && frame.getAge() > maxAgeMs) {
+            recycle(frame);
+            return null;
+        }
+
+        return frame;
+    }
+
+    /**
+     * Wait for a new enough frame to show up in the mailbox, giving up after the timeout.
+     *
+     * @param maxAgeMs  - The oldest a frame may be (in milliseconds) to still be returned.
+     * @param timeoutMs - The longest time to wait for a frame, in milliseconds.
+     * @return Rgb565Frame - The newest frame, or null if none showed up in time.
+     */
+    @Override
+    public Rgb565Frame awaitFrame(long maxAgeMs, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() / 1000000 + timeoutMs;
+        Rgb565Frame frame = latestFrame(maxAgeMs);
+
+        while (frame == null && System.nanoTime() / 1000000 < deadline) {
+            Thread.sleep(POLL_INTERVAL_MS);
+            frame = latestFrame(maxAgeMs);
+        }
+
+        return frame;
+    }
+
+    /** Return a frame to the pool. Called through Rgb565Frame.close(). */
+    void recycle(Rgb565Frame frame) {
+        pool.offer(frame);
+    }
+
+    /** Throw away the frame waiting in the mailbox, if any. */
+    public void clear() {
+        Rgb565Frame frame = latest.getAndSet(null);
+
+        if (frame != null) {
+            recycle(frame);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.blueshift.vision;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Appends the frames the jewel search looks at to a file (see {@link FrameRecording} for the
+ * layout), so that a bad jewel call can be looked at, and the detectors rerun on exactly the same
+ * pixels, after the match. A full frame is close to 2 MB, so frames closer together than the
+ * minimum interval are skipped. If writing ever fails the recorder closes itself instead of
+ * getting in the way of the jewel search.
+ *
+ * Writing a frame to the phone's flash takes far longer than capturing one, so record() only copies
+ * the frame into one of MAX_PENDING_FRAMES pooled buffers and a writer thread of its own does the
+ * writing. If the writer falls behind and every buffer is waiting, the frame is dropped rather than
+ * holding up the thread that captures frames.
+ *
+ * A recording can be capped at a number of bytes, after which no more frames are added to it, so
+ * that recording every match can not fill the phone.
+ *
+ * @author Gabriel Wong
+ * @version 1.2
+ */
+
+public class FrameRecorder implements Runnable {
+    //How many frames may wait to be written before new frames are dropped
+    public static final int MAX_PENDING_FRAMES = 2;
+
+    //The longest close() waits for the frames still waiting to be written
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+
+    private final File file;
+    private final long minIntervalMs;
+    private final long maxBytes;
+
+    //Only used by the writer thread (after the file header is written)
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(FrameRecording.FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    //Empty buffers, and filled buffers waiting for the writer (with room left for END)
+    private final BlockingQueue<PendingFrame> pool = new ArrayBlockingQueue<PendingFrame>(MAX_PENDING_FRAMES);
+    private final BlockingQueue<PendingFrame> queue = new ArrayBlockingQueue<PendingFrame>(MAX_PENDING_FRAMES + 1);
+    private static final PendingFrame END = new PendingFrame();
+
+    private final Thread writer;
+
+    private volatile boolean recording = true;
+    private boolean closed = false;
+
+    private long lastTimestamp;
+    private long fileBytes;
+    private int framesAccepted = 0;
+    private volatile int framesRecorded = 0, framesDropped = 0;
+
+    /**
+     * Open (or create) the recording, with no cap on its size, and start its writer thread.
+     *
+     * @param file          - The file to record to.
+     * @param minIntervalMs - The least time between two recorded frames, in milliseconds.
+     */
+    public FrameRecorder(File file, long minIntervalMs) throws IOException {
+        this(file, minIntervalMs, Long.MAX_VALUE);
+    }
+
+    /**
+     * Open (or create) the recording and start its writer thread. Frames are added to the end of an
+     * existing recording.
+     *
+     * @param file          - The file to record to.
+     * @param minIntervalMs - The least time between two recorded frames, in milliseconds.
+     * @param maxBytes      - The largest the file may grow to; frames that do not fit are skipped.
+     */
+    public FrameRecorder(File file, long minIntervalMs, long maxBytes) throws IOException {
+        this.file = file;
+        this.minIntervalMs = minIntervalMs;
+        this.maxBytes = maxBytes;
+
+        File directory = file.getAbsoluteFile().getParentFile();
+
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not make the directory " + directory);
+        }
+
+        channel = new FileOutputStream(file, true).getChannel();
+
+        if (channel.size() == 0) {
+            ByteBuffer fileHeader = ByteBuffer.allocate(FrameRecording.FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            fileHeader.putInt(FrameRecording.MAGIC).putInt(FrameRecording.VERSION);
+            fileHeader.flip();
+            writeFully(fileHeader);
+        }
+
+        fileBytes = channel.size();
+
+        for (int i = 0; i < MAX_PENDING_FRAMES; i++) {
+            pool.offer(new PendingFrame());
+        }
+
+        writer = new Thread(this, "FrameRecorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Copy a frame to be added to the recording, unless the last one was recorded too recently, the
+     * writer is too far behind or the frame would take the file past its cap. Never waits for the
+     * frame to be written.
+     *
+     * @param frame     - The frame to record. It is only read until this returns.
+     * @param timestamp - The time the frame was captured, in milliseconds.
+     * @return boolean - True if the frame will be written.
+     */
+    public synchronized boolean record(Rgb565Frame frame, long timestamp) {
+        if (!recording || (framesAccepted > 0 && timestamp - lastTimestamp < minIntervalMs)) {
+            return false;
+        }
+
+        long frameBytes = FrameRecording.FRAME_HEADER_BYTES + 2L * frame.getWidth() * frame.getHeight();
+        if (fileBytes + frameBytes > maxBytes) { return false; }
+
+        PendingFrame pending = pool.poll();
+
+        if (pending == null) {
+            //The writer is behind; try again with the next frame
+            framesDropped++;
+            return false;
+        }
+
+        pending.fill(frame, timestamp);
+        queue.offer(pending);
+
+        lastTimestamp = timestamp;
+        fileBytes += frameBytes;
+        framesAccepted++;
+        return true;
+    }
+
+    /** Write the frames handed over by record() until the recorder is closed. */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                PendingFrame pending = queue.take();
+                if (pending == END) { break; }
+
+                header.clear();
+                header.putLong(pending.timestamp).putInt(pending.width).putInt(pending.height);
+                header.flip();
+
+                writeFully(header);
+                writeFully(pending.pixelBytes);
+
+                framesRecorded++;
+                pool.offer(pending);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            //Closed without waiting for the frames left
+        } finally {
+            recording = false;
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Stop recording, wait (for at most CLOSE_TIMEOUT_MS) for the frames already copied to be
+     * written, and close the file.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) { return; }
+
+            closed = true;
+            recording = false;
+            queue.offer(END);
+        }
+
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRecording() { return recording; }
+    public int getFramesRecorded() { return framesRecorded; }
+
+    /** @return int - How many frames were skipped because the writer was too far behind. */
+    public int getFramesDropped() { return framesDropped; }
+
+    public File getFile() { return file; }
+
+    /** One frame's pixels, copied out of its Rgb565Frame and waiting to be written. */
+    private static class PendingFrame {
+        private ByteBuffer pixelBytes = ByteBuffer.allocate(0);
+        private long timestamp;
+        private int width, height;
+
+        void fill(Rgb565Frame frame, long timestamp) {
+            int pixelCount = frame.getWidth() * frame.getHeight();
+
+            if (pixelBytes.capacity() < pixelCount * 2) {
+                pixelBytes = ByteBuffer.allocateDirect(pixelCount * 2).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            pixelBytes.clear();
+            pixelBytes.asShortBuffer().put(frame.getPixels(), 0, pixelCount);
+            pixelBytes.limit(pixelCount * 2);
+
+            this.timestamp = timestamp;
+            this.width = frame.getWidth();
+            this.height = frame.getHeight();
+        }
+    }
+}
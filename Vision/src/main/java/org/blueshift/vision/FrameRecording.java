@@ -0,0 +1,26 @@
+package org.blueshift.vision;
+
+/**
+ * The layout of a frame recording, shared by the {@link FrameRecorder} that writes it and the
+ * {@link ReplayFrameSource} that reads it back. Everything is little endian:
+ *
+ *     file header:  int MAGIC, int VERSION
+ *     every frame:  long timestamp (ms), int width, int height, width * height RGB565 shorts
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public final class FrameRecording {
+    //"RGBF" when read as bytes
+    public static final int MAGIC = 0x46424752;
+    public static final int VERSION = 1;
+
+    public static final int FILE_HEADER_BYTES = 8;
+    public static final int FRAME_HEADER_BYTES = 16;
+
+    //The file extension recordings are saved with
+    public static final String EXTENSION = ".rgbf";
+
+    private FrameRecording() {}
+}
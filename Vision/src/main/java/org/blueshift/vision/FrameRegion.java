@@ -0,0 +1,53 @@
+package org.blueshift.vision;
+
+/**
+ * A rectangle of the camera frame to count red and blue pixels in. It is stored as fractions of the
+ * frame's width (x) and height (y) so that the same region fits a frame of any resolution. Any
+ * number of regions can be scored from one frame (see {@link ColorIntegralImage}), so new regions
+ * can be tried out at the field without writing a new counting loop for each one.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class FrameRegion {
+    private final String name;
+    private final double xStart, xEnd, yStart, yEnd;
+
+    /**
+     * @param name   - A name for the region, used in telemetry and error messages.
+     * @param xStart - [0, 1], The left edge as a fraction of the frame's width.
+     * @param xEnd   - [0, 1], The right edge as a fraction of the frame's width.
+     * @param yStart - [0, 1], The top edge as a fraction of the frame's height.
+     * @param yEnd   - [0, 1], The bottom edge as a fraction of the frame's height.
+     */
+    public FrameRegion(String name, double xStart, double xEnd, double yStart, double yEnd) {
+        if (xStart < 0 || xEnd > 1 || yStart < 0 || yEnd > 1 || xStart > xEnd || yStart > yEnd) {
+            throw new IllegalArgumentException("The region " + name + " does not fit inside of the frame");
+        }
+
+        this.name = name;
+        this.xStart = xStart;
+        this.xEnd = xEnd;
+        this.yStart = yStart;
+        this.yEnd = yEnd;
+    }
+
+    /** @return The first pixel column (inclusive) of this region on a frame of the given width. */
+    public int xStart(int width) { return (int) (width * xStart); }
+
+    /** @return The last pixel column (exclusive) of this region on a frame of the given width. */
+    public int xEnd(int width) { return (int) (width * xEnd); }
+
+    /** @return The first pixel row (inclusive) of this region on a frame of the given height. */
+    public int yStart(int height) { return (int) (height * yStart); }
+
+    /** @return The last pixel row (exclusive) of this region on a frame of the given height. */
+    public int yEnd(int height) { return (int) (height * yEnd); }
+
+    public String getName() { return name; }
+
+    public String toString() {
+        return name + " [" + xStart + ", " + xEnd + "] x [" + yStart + ", " + yEnd + "]";
+    }
+}
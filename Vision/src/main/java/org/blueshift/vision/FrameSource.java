@@ -0,0 +1,29 @@
+package org.blueshift.vision;
+
+/**
+ * Anything that hands out RGB565 frames to the jewel search: the live camera (through a
+ * {@link FrameMailbox}) or a recording being played back (see {@link ReplayFrameSource}). Every
+ * frame handed out MUST be closed once it has been read.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public interface FrameSource {
+    /**
+     * Take the next frame without waiting.
+     *
+     * @param maxAgeMs - The oldest a frame may be (in milliseconds) to still be returned.
+     * @return Rgb565Frame - The frame, or null if there is none.
+     */
+    Rgb565Frame latestFrame(long maxAgeMs);
+
+    /**
+     * Wait for the next frame, giving up after the timeout.
+     *
+     * @param maxAgeMs  - The oldest a frame may be (in milliseconds) to still be returned.
+     * @param timeoutMs - The longest time to wait for a frame, in milliseconds.
+     * @return Rgb565Frame - The frame, or null if none showed up in time.
+     */
+    Rgb565Frame awaitFrame(long maxAgeMs, long timeoutMs) throws InterruptedException;
+}
@@ -0,0 +1,137 @@
+package org.blueshift.vision;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several jewel detectors (for example the camera and the color sensor) at the same time and
+ * combines what they see. Each detector's leaning is treated as independent evidence, so the
+ * support for a jewel is
+ *
+ *     1 - (1 - c1) * (1 - c2) * ...
+ *
+ * over the confidences c of every detector leaning towards it, and the combined confidence is the
+ * support of the leading jewel minus the support of the other. A single detector that is sure on
+ * its own decides as fast as it alone would, two detectors that are each half sure and agree are
+ * 75% sure together, and detectors that disagree hold each other back. As soon as the combined
+ * confidence reaches the threshold the rest of the detectors are stopped.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class FusionJewelDetector implements JewelDetector {
+    //How often the detectors' progress is combined
+    private static final long POLL_MS = 10;
+
+    private final JewelDetector[] detectors;
+
+    private volatile JewelState jewel = JewelState.UNKNOWN;
+    private volatile double confidence = 0;
+
+    /**
+     * @param detectors - The detectors to combine. All of them report the jewel nearer the top of the camera.
+     */
+    public FusionJewelDetector(JewelDetector... detectors) {
+        if (detectors.length == 0) {
+            throw new IllegalArgumentException("There must be at least one detector to combine");
+        }
+
+        this.detectors = detectors.clone();
+    }
+
+    @Override
+    public JewelState findJewel(final double confidence, final int deadline) {
+        long endTime = System.nanoTime() / 1000000 + deadline;
+        ExecutorService executor = Executors.newFixedThreadPool(detectors.length);
+        Future<?>[] searches = new Future<?>[detectors.length];
+
+        //Forget the last search now, so that none of it is combined before the new one begins
+        reset();
+
+        for (int i = 0; i < detectors.length; i++) {
+            final JewelDetector detector = detectors[i];
+
+            searches[i] = executor.submit(new Callable<JewelState>() {
+                @Override
+                public JewelState call() {
+                    return detector.findJewel(confidence, deadline);
+                }
+            });
+        }
+
+        executor.shutdown();
+
+        try {
+            while (true) {
+                //Read whether every search is done before combining, so that their last words count
+                boolean allDone = true;
+
+                for (Future<?> search : searches) {
+                    allDone &= search.isDone();
+                }
+
+                combine();
+
+                if (this.confidence >= confidence || allDone || System.nanoTime() / 1000000 >= endTime) {
+                    break;
+                }
+
+                Thread.sleep(POLL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            //Stop any detector still searching; they all end early when interrupted
+            executor.shutdownNow();
+        }
+
+        return jewel;
+    }
+
+    /** Combine the progress of every detector into the jewel and confidence. */
+    private void combine() {
+        double redDoubt = 1, blueDoubt = 1;
+
+        for (JewelDetector detector : detectors) {
+            JewelState leaning = detector.getJewel();
+            double detectorConfidence = Math.max(0, Math.min(1, detector.getConfidence()));
+
+            if (leaning == JewelState.RED) {
+                redDoubt *= 1 - detectorConfidence;
+            } else if (leaning == JewelState.BLUE) {
+                blueDoubt *= 1 - detectorConfidence;
+            }
+        }
+
+        double redSupport = 1 - redDoubt, blueSupport = 1 - blueDoubt;
+
+        if (redSupport > blueSupport) {
+            jewel = JewelState.RED;
+        } else if (blueSupport > redSupport) {
+            jewel = JewelState.BLUE;
+        } else {
+            jewel = JewelState.UNKNOWN;
+        }
+
+        confidence = Math.abs(redSupport - blueSupport);
+    }
+
+    @Override
+    public JewelState getJewel() { return jewel; }
+
+    @Override
+    public double getConfidence() { return confidence; }
+
+    @Override
+    public void reset() {
+        for (JewelDetector detector : detectors) {
+            detector.reset();
+        }
+
+        jewel = JewelState.UNKNOWN;
+        confidence = 0;
+    }
+}
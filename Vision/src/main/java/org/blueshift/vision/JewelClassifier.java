@@ -0,0 +1,162 @@
+package org.blueshift.vision;
+
+/**
+ * Counts the red and blue pixels of any number of regions ({@link FrameRegion}) in a single pass
+ * over one frame. The pass builds the frame's red and blue summed-area tables (see
+ * {@link ColorIntegralImage}), after which every region is scored with four lookups, however many
+ * regions there are and however big they are. Which pixels count as red or blue is decided by a
+ * {@link ColorClassTable}. The frame can also be shrunk first (see {@link FrameDecimator}) to trade
+ * accuracy for speed. This replaces calling countPixels() once per section and color, which grabbed
+ * (and scanned) a new frame every time.
+ *
+ * @author Gabriel Wong
+ * @version 1.5
+ */
+
+public class JewelClassifier {
+    //By default, only every second pixel in each direction is looked at
+    public static final int DEFAULT_STEP = 2;
+
+    //How VuforiaTracker's jewel searches shrink the frame and step through it, so that
+    //JewelCorpusScore scores the same setup. The full search looks at two big halves, so it can be
+    //shrunk further than the bottom left search
+    public static final int FULL_SEARCH_DECIMATION = 4;
+    public static final int BOTTOM_LEFT_SEARCH_DECIMATION = 2;
+    public static final int SEARCH_STEP = 1;
+
+    protected final FrameRegion[] regions;
+    protected final int step;
+    protected final ColorClassTable colorClasses;
+    protected final int decimation;
+
+    protected final FrameDecimator decimator = new FrameDecimator();
+    protected final ColorIntegralImage integralImage;
+
+    /**
+     * @param sides - The sections of the frame to count pixels in.
+     */
+    public JewelClassifier(CameraSide... sides) {
+        this(DEFAULT_STEP, CameraSide.regionsOf(sides));
+    }
+
+    /**
+     * @param step  - Look at every step-th pixel in each direction. 1 looks at every pixel.
+     * @param sides - The sections of the frame to count pixels in.
+     */
+    public JewelClassifier(int step, CameraSide... sides) {
+        this(step, CameraSide.regionsOf(sides));
+    }
+
+    /**
+     * @param step    - Look at every step-th pixel in each direction. 1 looks at every pixel.
+     * @param regions - The regions of the frame to count pixels in.
+     */
+    public JewelClassifier(int step, FrameRegion... regions) {
+        this(ColorClassTable.jewels(), step, regions);
+    }
+
+    /**
+     * @param colorClasses - The table that decides which pixels are red and which are blue.
+     * @param step         - Look at every step-th pixel in each direction. 1 looks at every pixel.
+     * @param regions      - The regions of the frame to count pixels in.
+     */
+    public JewelClassifier(ColorClassTable colorClasses, int step, FrameRegion... regions) {
+        this(colorClasses, 1, step, regions);
+    }
+
+    /**
+     * @param colorClasses - The table that decides which pixels are red and which are blue.
+     * @param decimation   - Shrink the frame this many times (1, 2, 4 or 8) before classifying it.
+     * @param step         - Look at every step-th pixel (of the shrunk frame) in each direction.
+     * @param regions      - The regions of the frame to count pixels in.
+     */
+    public JewelClassifier(ColorClassTable colorClasses, int decimation, int step, FrameRegion... regions) {
+        if (decimation < 1 || Integer.bitCount(decimation) != 1) {
+            throw new IllegalArgumentException("The decimation factor must be a power of two, not " + decimation);
+        }
+
+        this.decimation = decimation;
+        this.step = step;
+        this.regions = regions.clone();
+        this.colorClasses = colorClasses;
+        this.integralImage = new ColorIntegralImage(colorClasses);
+    }
+
+    /**
+     * Shrink the frame (if this classifier decimates), build its integral image down to the lowest
+     * row any region needs, and then count the red and blue pixels of every region from it. The
+     * counts are in pixels of the shrunk frame.
+     *
+     * @param frame - A reader pointed at the RGB565 frame to classify.
+     * @return PixelCounts - The red and blue counts of each region.
+     */
+    public PixelCounts classify(Rgb565Reader frame) {
+        int[] redCounts = new int[regions.length];
+        int[] blueCounts = new int[regions.length];
+
+        Rgb565Reader decimated = decimator.decimate(frame, decimation);
+
+        integralImage.build(decimated, step, 0, rowsNeeded(decimated.getHeight()));
+        addCounts(integralImage, redCounts, blueCounts);
+
+        return new PixelCounts(regions, redCounts, blueCounts);
+    }
+
+    /** @return int - The number of rows (from the top) that any region reaches into. */
+    protected int rowsNeeded(int height) {
+        int rowsNeeded = 0;
+
+        for (FrameRegion region : regions) {
+            rowsNeeded = Math.max(rowsNeeded, region.yEnd(height));
+        }
+
+        return rowsNeeded;
+    }
+
+    /** @return int - The first column that any region starts at. */
+    protected int firstColumn(int width) {
+        int firstColumn = width;
+
+        for (FrameRegion region : regions) {
+            firstColumn = Math.min(firstColumn, region.xStart(width));
+        }
+
+        return firstColumn;
+    }
+
+    /** @return int - The number of columns (from the left) that any region reaches into. */
+    protected int columnsNeeded(int width) {
+        int columnsNeeded = 0;
+
+        for (FrameRegion region : regions) {
+            columnsNeeded = Math.max(columnsNeeded, region.xEnd(width));
+        }
+
+        return columnsNeeded;
+    }
+
+    /** @return int - The first row that any region starts at. */
+    protected int firstRow(int height) {
+        int firstRow = height;
+
+        for (FrameRegion region : regions) {
+            firstRow = Math.min(firstRow, region.yStart(height));
+        }
+
+        return firstRow;
+    }
+
+    /**
+     * Score every region against an integral image and add the results to the given counts.
+     *
+     * @param image      - A built integral image (of the whole frame or of a band of it).
+     * @param redCounts  - The red count of each region, added to.
+     * @param blueCounts - The blue count of each region, added to.
+     */
+    protected void addCounts(ColorIntegralImage image, int[] redCounts, int[] blueCounts) {
+        for (int i = 0; i < regions.length; i++) {
+            redCounts[i] += image.countRed(regions[i]);
+            blueCounts[i] += image.countBlue(regions[i]);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.blueshift.vision;
+
+/**
+ * Smooths the readings of a color sensor held over a jewel and decides which jewel it is, along
+ * with how sure it is. Each reading is turned into its red-blue balance
+ *
+ *     (red - blue) / (red + blue)
+ *
+ * which runs from -1 (all blue) to 1 (all red) and does not change with the brightness of the
+ * venue. The last few balances are kept in a ring buffer. The jewel is decided by their median, so
+ * a single glint or a reading taken while the arm swings into place does not flip the answer. An
+ * exponential moving average follows the newest readings, and while it disagrees with the median
+ * the reading is still settling and the jewel is UNKNOWN. The confidence is the share of the
+ * buffer that agrees with the median, scaled down as the buffer gets noisier (see getVariance()).
+ *
+ * Nothing is allocated per reading.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class JewelColorFilter {
+    //A balance of 0.2 is the old rule of one color being 1.5 times the other
+    public static final int DEFAULT_WINDOW = 9;
+    public static final float DEFAULT_THRESHOLD = 0.2f;
+    public static final float DEFAULT_MIN_SIGNAL = 10;
+    public static final float DEFAULT_EMA_WEIGHT = 0.3f;
+
+    //The standard deviation of the balance at which the confidence falls to 0
+    private static final float MAX_DEVIATION = 0.5f;
+
+    private final float threshold;
+    private final float minSignal;
+    private final float emaWeight;
+
+    private final float[] balances;
+    private final float[] sorted;
+    private int next, count;
+
+    private double sum, sumOfSquares;
+    private float ema;
+
+    public JewelColorFilter() {
+        this(DEFAULT_WINDOW, DEFAULT_THRESHOLD, DEFAULT_MIN_SIGNAL, DEFAULT_EMA_WEIGHT);
+    }
+
+    /**
+     * @param window    - How many of the newest readings to keep.
+     * @param threshold - (0, 1), How far the balance must lean to one side to be called red or blue.
+     * @param minSignal - The least red + blue to trust. Dimmer readings count as a balance of 0.
+     * @param emaWeight - (0, 1], How much each new reading moves the moving average.
+     */
+    public JewelColorFilter(int window, float threshold, float minSignal, float emaWeight) {
+        if (window < 1) {
+            throw new IllegalArgumentException("The window must hold at least one reading, not " + window);
+        }
+
+        this.threshold = threshold;
+        this.minSignal = minSignal;
+        this.emaWeight = emaWeight;
+        this.balances = new float[window];
+        this.sorted = new float[window];
+    }
+
+    /**
+     * Add one reading of the sensor.
+     *
+     * @param red  - The red channel of the reading.
+     * @param blue - The blue channel of the reading.
+     */
+    public void add(int red, int blue) {
+        float signal = red + blue;
+        float balance = signal < minSignal ? 0 : (red - blue) / signal;
+
+        if (count == balances.length) {
+            float oldest = balances[next];
+            sum -= oldest;
+            sumOfSquares -= oldest * oldest;
+        } else {
+            count++;
+        }
+
+        balances[next] = balance;
+        next = (next + 1) % balances.length;
+        sum += balance;
+        sumOfSquares += balance * balance;
+
+        ema = count == 1 ? balance : ema + emaWeight * (balance - ema);
+    }
+
+    /** Forget every reading so that a new jewel can be read. */
+    public void reset() {
+        next = 0;
+        count = 0;
+        sum = 0;
+        sumOfSquares = 0;
+        ema = 0;
+    }
+
+    /** @return float - The median balance of the buffer, or 0 if it is empty. */
+    public float getMedian() {
+        if (count == 0) { return 0; }
+
+        //Insertion sort; the buffer is only a handful of readings
+        for (int i = 0; i < count; i++) {
+            float balance = balances[i];
+            int j = i - 1;
+
+            while (j >= 0 && sorted[j] > balance) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+
+            sorted[j + 1] = balance;
+        }
+
+        return count % 2 == 1 ? sorted[count / 2] : (sorted[count / 2 - 1] + sorted[count / 2]) / 2;
+    }
+
+    /** @return float - The exponential moving average of the balance. */
+    public float getEma() { return ema; }
+
+    /** @return float - The variance of the balances in the buffer. */
+    public float getVariance() {
+        if (count == 0) { return 0; }
+
+        double mean = sum / count;
+
+        //Rounding in the running sums can leave a tiny negative number
+        return (float) Math.max(0, sumOfSquares / count - mean * mean);
+    }
+
+    public int getSampleCount() { return count; }
+
+    /** @return JewelState - The jewel a balance leans towards. */
+    private JewelState jewelOf(float balance) {
+        if (balance >= threshold) {
+            return JewelState.RED;
+        } else if (balance <= -threshold) {
+            return JewelState.BLUE;
+        } else {
+            return JewelState.UNKNOWN;
+        }
+    }
+
+    /**
+     * @return JewelState - The jewel of the median balance, or UNKNOWN if the moving average does not
+     * agree with it yet.
+     */
+    public JewelState getJewel() {
+        JewelState jewel = jewelOf(getMedian());
+        return jewelOf(ema) == jewel ? jewel : JewelState.UNKNOWN;
+    }
+
+    /**
+     * @return [0, 1] - How sure the filter is of getJewel(): the share of a full buffer that agrees
+     * with it, times (1 - standard deviation / 0.5). 0 when the jewel is UNKNOWN.
+     */
+    public float getConfidence() {
+        JewelState jewel = getJewel();
+
+        if (jewel == JewelState.UNKNOWN) { return 0; }
+
+        int agreeing = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (jewelOf(balances[i]) == jewel) {
+                agreeing++;
+            }
+        }
+
+        float steadiness = Math.max(0, 1 - (float) Math.sqrt(getVariance()) / MAX_DEVIATION);
+        return (float) agreeing / balances.length * steadiness;
+    }
+
+    /** @return boolean - Whether the confidence has reached the given threshold. */
+    public boolean isConfident(float confidence) {
+        return getConfidence() >= confidence;
+    }
+}
@@ -0,0 +1,235 @@
+package org.blueshift.vision;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Scores a jewel search (a classifier and the two regions it compares, the same as
+ * VuforiaTracker.jewelSearch_Full() and jewelSearch_BottomLeft()) against a labeled
+ * {@link FrameCorpus}. Every labeled frame is classified and the jewel found is compared to the
+ * label, so a change to the vision code can be checked against real recordings before it goes on
+ * the robot. It can be run from a laptop with:
+ *
+ *     ./gradlew :Vision:scoreCorpus -Pcorpus=recording.rgbf -Plabels=recording.labels
+ *
+ * A labels file has one line per run of frames holding the same jewel (at the left region):
+ *
+ *     #first last jewel
+ *     0 41 RED
+ *     42 80 BLUE
+ *
+ * @author Gabriel Wong
+ * @version 1.1
+ */
+
+public class JewelCorpusScore {
+    private int correct, wrong, unknown, unlabeled;
+
+    /**
+     * Read a labels file.
+     *
+     * @param labelFile  - The labels file.
+     * @param frameCount - The number of frames in the corpus.
+     * @return JewelState[] - The label of every frame; null for frames without one.
+     * @throws IOException - If the file can't be read, or a line is not "first last jewel" with
+     *                     0 <= first <= last and first inside of the corpus.
+     */
+    public static JewelState[] readLabels(File labelFile, int frameCount) throws IOException {
+        JewelState[] labels = new JewelState[frameCount];
+        BufferedReader reader = new BufferedReader(new FileReader(labelFile));
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) { continue; }
+
+                String[] parts = line.split("\\s+");
+
+                if (parts.length != 3) {
+                    throw new IOException("Expected \"first last jewel\" but found \"" + line + "\"");
+                }
+
+                int first, last;
+                JewelState jewel;
+
+                try {
+                    first = Integer.parseInt(parts[0]);
+                    last = Integer.parseInt(parts[1]);
+                    jewel = JewelState.valueOf(parts[2].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Expected \"first last jewel\" but found \"" + line + "\"");
+                }
+
+                if (first < 0 || first >= frameCount || last < first) {
+                    throw new IOException("The frames of \"" + line + "\" are not inside of the " + frameCount + " frames of the corpus");
+                }
+
+                //A run may go past the end of a recording whose last frame was cut off
+                last = Math.min(last, frameCount - 1);
+
+                for (int i = first; i <= last; i++) {
+                    labels[i] = jewel;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return labels;
+    }
+
+    /**
+     * Classify every frame of the corpus on several threads and compare the results to the labels.
+     *
+     * @param corpus      - The recorded frames.
+     * @param labels      - The jewel at the left region of every frame (null if unlabeled).
+     * @param pool        - The threads to classify on.
+     * @param classifiers - One classifier per thread, all set up the same way, holding both regions.
+     * @param left        - The region where the jewel being sensed sits.
+     * @param right       - The region where the other jewel sits.
+     * @return JewelCorpusScore - How many frames were classified correctly.
+     */
+    public static JewelCorpusScore score(FrameCorpus corpus, JewelState[] labels, ExecutorService pool,
+                                         List<? extends JewelClassifier> classifiers,
+                                         FrameRegion left, FrameRegion right) throws InterruptedException {
+        List<Scorer> scorers = new ArrayList<Scorer>();
+
+        for (JewelClassifier classifier : classifiers) {
+            scorers.add(new Scorer(corpus, labels, classifier, left, right));
+        }
+
+        corpus.forEach(pool, scorers);
+
+        JewelCorpusScore total = new JewelCorpusScore();
+
+        for (Scorer scorer : scorers) {
+            total.correct += scorer.score.correct;
+            total.wrong += scorer.score.wrong;
+            total.unknown += scorer.score.unknown;
+            total.unlabeled += scorer.score.unlabeled;
+        }
+
+        return total;
+    }
+
+    /**
+     * Scores the frames handed to one thread. An adaptive classifier counts each frame with the cuts
+     * it picked from the frame before (see AdaptiveJewelClassifier), but the frames are handed out
+     * to the threads in no fixed order. So every frame is classified right after the frame recorded
+     * before it (the first frame after itself), the way the robot would see them, and the score does
+     * not depend on which thread got which frame.
+     */
+    private static class Scorer implements FrameCorpus.Visitor {
+        private final FrameCorpus corpus;
+        private final JewelState[] labels;
+        private final JewelClassifier classifier;
+        private final FrameRegion left, right;
+
+        private final Rgb565Reader reader = new Rgb565Reader();
+        private final JewelCorpusScore score = new JewelCorpusScore();
+
+        Scorer(FrameCorpus corpus, JewelState[] labels, JewelClassifier classifier, FrameRegion left, FrameRegion right) {
+            this.corpus = corpus;
+            this.labels = labels;
+            this.classifier = classifier;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public void visit(FrameCorpus.Frame frame) {
+            JewelState label = labels[frame.getIndex()];
+
+            if (label == null) {
+                score.unlabeled++;
+                return;
+            }
+
+            reader.wrap(corpus.get(Math.max(0, frame.getIndex() - 1)));
+            classifier.classify(reader);
+
+            reader.wrap(frame);
+            JewelState jewel = classifier.classify(reader).jewelAt(left, right);
+
+            if (jewel == label) {
+                score.correct++;
+            } else if (jewel == JewelState.UNKNOWN) {
+                score.unknown++;
+            } else {
+                score.wrong++;
+            }
+        }
+    }
+
+    public int getCorrect() { return correct; }
+    public int getWrong() { return wrong; }
+    public int getUnknown() { return unknown; }
+    public int getUnlabeled() { return unlabeled; }
+
+    /** @return [0, 1] - The share of labeled frames that were classified correctly. */
+    public double getAccuracy() {
+        int labeled = correct + wrong + unknown;
+        return labeled == 0 ? 0 : (double) correct / labeled;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f%% correct (%d correct, %d wrong, %d unknown, %d unlabeled)",
+                getAccuracy() * 100, correct, wrong, unknown, unlabeled);
+    }
+
+    /**
+     * Score both of VuforiaTracker's jewel searches (with its settings) against a labeled recording.
+     *
+     * @param args - The recording, then its labels file.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: JewelCorpusScore <recording> <labels>");
+            System.exit(1);
+        }
+
+        FrameCorpus corpus = new FrameCorpus(new File(args[0]));
+        JewelState[] labels = readLabels(new File(args[1]), corpus.size());
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        FrameRegion left = CameraSide.LEFT.getRegion(), right = CameraSide.RIGHT.getRegion();
+        FrameRegion bottomLeft = CameraSide.BOTTOMLEFTLEFT.getRegion(), bottomRight = CameraSide.BOTTOMLEFTRIGHT.getRegion();
+
+        List<JewelClassifier> fullClassifiers = new ArrayList<JewelClassifier>();
+        List<JewelClassifier> bottomLeftClassifiers = new ArrayList<JewelClassifier>();
+
+        //The same settings as VuforiaTracker's searches. The frames are already split between the
+        //threads, so each classifier runs on one thread; its counts match the striped classifier's
+        for (int i = 0; i < threads; i++) {
+            fullClassifiers.add(new AdaptiveJewelClassifier(ColorClassTable.jewels(), JewelClassifier.FULL_SEARCH_DECIMATION,
+                    JewelClassifier.SEARCH_STEP, left, right));
+            bottomLeftClassifiers.add(new AdaptiveJewelClassifier(ColorClassTable.jewels(), JewelClassifier.BOTTOM_LEFT_SEARCH_DECIMATION,
+                    JewelClassifier.SEARCH_STEP, bottomLeft, bottomRight));
+        }
+
+        try {
+            long start = System.nanoTime();
+            JewelCorpusScore full = score(corpus, labels, pool, fullClassifiers, left, right);
+            long middle = System.nanoTime();
+            JewelCorpusScore bottom = score(corpus, labels, pool, bottomLeftClassifiers, bottomLeft, bottomRight);
+            long end = System.nanoTime();
+
+            System.out.println(corpus.size() + " frames");
+            System.out.println("Full:        " + full + " in " + (middle - start) / 1000000 + " ms");
+            System.out.println("Bottom left: " + bottom + " in " + (end - middle) / 1000000 + " ms");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
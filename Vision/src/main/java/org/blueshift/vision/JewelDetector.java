@@ -0,0 +1,35 @@
+package org.blueshift.vision;
+
+/**
+ * Anything that can tell which jewel is which: the camera (see VuforiaTracker), the color sensor on
+ * the jewel arm (see JewelSense_ColorSensor), or several of them at once (see
+ * {@link FusionJewelDetector}). Every detector reports the jewel closer to the top of the camera (the
+ * same one the camera's jewel searches report), so that their answers can be compared.
+ *
+ * getJewel() and getConfidence() may be called from another thread while a search is running, and
+ * then report how the search stands so far. Every search starts from nothing (as after reset()).
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public interface JewelDetector {
+    /**
+     * Look for the jewel until the detector is sure enough of it, or until the deadline passes.
+     * Stops early (with the best guess so far) if the thread is interrupted.
+     *
+     * @param confidence - [0, 1), How sure the detector must be before it ends early.
+     * @param deadline   - The longest time to search, in milliseconds.
+     * @return JewelState - The jewel nearer the top, or UNKNOWN if nothing leaned either way.
+     */
+    JewelState findJewel(double confidence, int deadline);
+
+    /** @return JewelState - The jewel nearer the top that the current (or last) search leans towards. */
+    JewelState getJewel();
+
+    /** @return [0, 1] - How sure the current (or last) search is of getJewel(). */
+    double getConfidence();
+
+    /** Forget the last search, so that getJewel() is UNKNOWN and getConfidence() is 0. */
+    void reset();
+}
@@ -0,0 +1,77 @@
+package org.blueshift.vision;
+
+/**
+ * Collects the jewel seen in each of many frames and decides on a jewel once enough of them agree.
+ * Every frame casts one vote (RED, BLUE or UNKNOWN). The confidence of the leading jewel is
+ *
+ *     (leading votes - trailing votes) / (frames + 1)
+ *
+ * so unanimous frames raise it quickly (3 frames = 0.75, 5 frames = 0.83) while disagreeing or
+ * UNKNOWN frames hold it back. This lets an autonomous program decide as soon as the camera is sure
+ * instead of waiting a fixed time and guessing.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class JewelVoter {
+    private final double threshold;
+
+    private int redVotes, blueVotes, frames;
+
+    /**
+     * @param threshold - [0, 1), The confidence needed before isConfident() is true.
+     */
+    public JewelVoter(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Count the jewel seen in one frame.
+     *
+     * @param jewel - The jewel seen in the frame, or null if the frame could not be read.
+     */
+    public void addVote(JewelState jewel) {
+        if (jewel == null) { return; }
+
+        frames++;
+
+        if (jewel == JewelState.RED) {
+            redVotes++;
+        } else if (jewel == JewelState.BLUE) {
+            blueVotes++;
+        }
+    }
+
+    /** @return [0, 1) - How sure the voter is of the leading jewel. */
+    public double getConfidence() {
+        return (double) Math.abs(redVotes - blueVotes) / (frames + 1);
+    }
+
+    /** @return boolean - Whether the confidence has reached the threshold. */
+    public boolean isConfident() {
+        return frames > 0 && getConfidence() >= threshold;
+    }
+
+    /**
+     * @return JewelState - The jewel with the most votes (even if not confident), or UNKNOWN on a tie.
+     */
+    public JewelState getLeader() {
+        if (redVotes > blueVotes) {
+            return JewelState.RED;
+        } else if (blueVotes > redVotes) {
+            return JewelState.BLUE;
+        } else {
+            return JewelState.UNKNOWN;
+        }
+    }
+
+    public int getFrames() { return frames; }
+
+    /** Forget every vote so that a new search can begin. */
+    public void reset() {
+        redVotes = 0;
+        blueVotes = 0;
+        frames = 0;
+    }
+}
@@ -0,0 +1,128 @@
+package org.blueshift.vision;
+
+import java.util.Arrays;
+
+/**
+ * Picks how red (or blue) a pixel must be to count, from the frame itself. A histogram of
+ * (red - blue) is built over the red and blue pixels of the part of the frame being classified, and
+ * Otsu's method is run on each side of zero: the positive side is split into "slightly red"
+ * (background) and "clearly red" (jewel), and the negative side likewise for blue. The cuts are then
+ * handed to a {@link ColorIntegralImage}, so the regions are still scored with four lookups each.
+ *
+ * The histogram is filled in by ColorIntegralImage.build() in the same pass that builds the integral
+ * image, over the window of the frame set with setWindow(). A histogram can also be built over a band
+ * of rows and added to others, so that the stripes of a {@link StripedJewelClassifier} can each build
+ * their own.
+ *
+ * @author Gabriel Wong
+ * @version 1.1
+ */
+
+public class OtsuThresholds {
+    //Red and blue are 5 bits each, so (red - blue) is in [-31, 31]
+    public static final int MAX_DIFFERENCE = 31;
+    private static final int BINS = 2 * MAX_DIFFERENCE + 1;
+
+    //The two groups Otsu's method finds must be at least this far apart (in 5 bit levels) for the
+    //split to be used. Otherwise there is no background to cut away and every leaning pixel counts.
+    private static final double MIN_SEPARATION = 4;
+
+    private final int[] histogram = new int[BINS];
+
+    //The rectangle of the frame the histogram covers (see setWindow())
+    private int xFrom, xTo, yFrom, yTo;
+
+    public void clear() {
+        Arrays.fill(histogram, 0);
+    }
+
+    /**
+     * Set the rectangle of the frame whose red and blue pixels go into the histogram when it is
+     * handed to ColorIntegralImage.build(). Pixels outside of it are still counted in the integral
+     * image, just not in the histogram.
+     *
+     * @param xFrom - The first column (inclusive).
+     * @param xTo   - The last column (exclusive).
+     * @param yFrom - The first row (inclusive).
+     * @param yTo   - The last row (exclusive).
+     */
+    public void setWindow(int xFrom, int xTo, int yFrom, int yTo) {
+        this.xFrom = xFrom;
+        this.xTo = xTo;
+        this.yFrom = yFrom;
+        this.yTo = yTo;
+    }
+
+    int getXFrom() { return xFrom; }
+    int getXTo() { return xTo; }
+    int getYFrom() { return yFrom; }
+    int getYTo() { return yTo; }
+
+    /**
+     * Add one red or blue pixel to the histogram. Called by ColorIntegralImage.build().
+     *
+     * @param difference - [-31, 31], The pixel's red level minus its blue level (see difference()).
+     */
+    void addDifference(int difference) {
+        histogram[difference + MAX_DIFFERENCE]++;
+    }
+
+    /** Add another histogram (e.g. of another stripe of the same frame) to this one. */
+    public void add(OtsuThresholds other) {
+        for (int bin = 0; bin < BINS; bin++) {
+            histogram[bin] += other.histogram[bin];
+        }
+    }
+
+    /** @return int - [1, 31], How far red must beat blue for a pixel to count as red. */
+    public int redCut() { return otsuCut(1); }
+
+    /** @return int - [1, 31], How far blue must beat red for a pixel to count as blue. */
+    public int blueCut() { return otsuCut(-1); }
+
+    /** @return int - [-31, 31], The pixel's 5 bit red level minus its 5 bit blue level. */
+    static int difference(short pixel) {
+        return ((pixel >> 11) & 0x1f) - (pixel & 0x1f);
+    }
+
+    /**
+     * Run Otsu's method on one side of the histogram: find the split that best separates the pixels
+     * leaning that way into two groups (the split with the largest variance between the groups).
+     *
+     * @param sign - 1 for the red (positive) side, -1 for the blue (negative) side.
+     * @return int - [1, 31], How far a pixel must lean that way to be counted.
+     */
+    private int otsuCut(int sign) {
+        long total = 0, totalSum = 0;
+
+        for (int difference = 1; difference <= MAX_DIFFERENCE; difference++) {
+            int count = histogram[MAX_DIFFERENCE + sign * difference];
+            total += count;
+            totalSum += (long) difference * count;
+        }
+
+        long below = 0, belowSum = 0;
+        double bestVariance = 0;
+        int bestCut = 1;
+
+        for (int split = 1; split < MAX_DIFFERENCE; split++) {
+            int count = histogram[MAX_DIFFERENCE + sign * split];
+            below += count;
+            belowSum += (long) split * count;
+
+            long above = total - below;
+            if (below == 0 || above == 0) { continue; }
+
+            double belowMean = (double) belowSum / below;
+            double aboveMean = (double) (totalSum - belowSum) / above;
+            double variance = (double) below * above * (aboveMean - belowMean) * (aboveMean - belowMean);
+
+            if (variance > bestVariance && aboveMean - belowMean >= MIN_SEPARATION) {
+                bestVariance = variance;
+                bestCut = split + 1;
+            }
+        }
+
+        return bestCut;
+    }
+}
@@ -0,0 +1,75 @@
+package org.blueshift.vision;
+
+/**
+ * The result of one pass of the {@link JewelClassifier} over a single camera frame. It holds the
+ * number of red and blue pixels that were counted in every {@link FrameRegion} the classifier was
+ * set up with, so that both jewels are always judged from the same frame.
+ *
+ * @author Gabriel Wong
+ * @version 1.1
+ */
+
+public class PixelCounts {
+    private final FrameRegion[] regions;
+    private final int[] redCounts;
+    private final int[] blueCounts;
+
+    /**
+     * @param regions    - The regions that were counted, in the same order as the counts.
+     * @param redCounts  - The number of red pixels in each region.
+     * @param blueCounts - The number of blue pixels in each region.
+     */
+    PixelCounts(FrameRegion[] regions, int[] redCounts, int[] blueCounts) {
+        this.regions = regions;
+        this.redCounts = redCounts;
+        this.blueCounts = blueCounts;
+    }
+
+    /**
+     * Find where the given region was stored in the count arrays.
+     *
+     * @param region - The region to look for.
+     * @return int - The index of the region.
+     */
+    private int indexOf(FrameRegion region) {
+        for (int i = 0; i < regions.length; i++) {
+            if (regions[i] == region) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("The region " + region.getName() + " was not counted");
+    }
+
+    public int getRed(FrameRegion region) { return redCounts[indexOf(region)]; }
+    public int getBlue(FrameRegion region) { return blueCounts[indexOf(region)]; }
+
+    public int getRed(CameraSide side) { return getRed(side.getRegion()); }
+    public int getBlue(CameraSide side) { return getBlue(side.getRegion()); }
+
+    /**
+     * Compare the counts of two regions to find which jewel sits in the left region. The left region
+     * must lean red while the right region leans blue (or the other way around) for a jewel to be
+     * found.
+     *
+     * @param left  - The region where the jewel being sensed sits.
+     * @param right - The region where the other jewel sits.
+     * @return JewelState - the jewel in the left region.
+     */
+    public JewelState jewelAt(FrameRegion left, FrameRegion right) {
+        int leftRed = getRed(left), leftBlue = getBlue(left);
+        int rightRed = getRed(right), rightBlue = getBlue(right);
+
+        if (leftRed > leftBlue && rightBlue > rightRed) {
+            return JewelState.RED;
+        } else if (leftBlue > leftRed && rightRed > rightBlue) {
+            return JewelState.BLUE;
+        } else {
+            return JewelState.UNKNOWN;
+        }
+    }
+
+    public JewelState jewelAt(CameraSide left, CameraSide right) {
+        return jewelAt(left.getRegion(), right.getRegion());
+    }
+}
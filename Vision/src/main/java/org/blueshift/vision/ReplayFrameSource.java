@@ -0,0 +1,122 @@
+package org.blueshift.vision;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Plays a recording made by a {@link FrameRecorder} back as a {@link FrameSource}, one frame per
+ * call and as fast as they are asked for, so the detectors see exactly the pixels they saw on the
+ * robot. The frames keep the timestamps they were recorded with, so their age means nothing here
+ * and maxAgeMs is ignored.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public class ReplayFrameSource implements FrameSource {
+    private final FileChannel channel;
+    private final FrameMailbox mailbox = new FrameMailbox();
+
+    private final ByteBuffer header = ByteBuffer.allocate(FrameRecording.FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer pixelBytes = ByteBuffer.allocate(0);
+
+    /**
+     * @param file - A recording made by a FrameRecorder.
+     */
+    public ReplayFrameSource(File file) throws IOException {
+        channel = new FileInputStream(file).getChannel();
+
+        ByteBuffer fileHeader = ByteBuffer.allocate(FrameRecording.FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (!readFully(fileHeader) || fileHeader.getInt(0) != FrameRecording.MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a frame recording");
+        } else if (fileHeader.getInt(4) != FrameRecording.VERSION) {
+            channel.close();
+            throw new IOException(file + " is a version " + fileHeader.getInt(4) + " recording");
+        }
+    }
+
+    /**
+     * Read the next frame of the recording. The caller owns the returned frame and must close() it.
+     *
+     * @return Rgb565Frame - The next frame, or null once the recording has ended.
+     */
+    public Rgb565Frame nextFrame() throws IOException {
+        header.clear();
+
+        if (!readFully(header)) {
+            return null;
+        }
+
+        long timestamp = header.getLong(0);
+        int width = header.getInt(8);
+        int height = header.getInt(12);
+        int pixelCount = width * height;
+
+        if (pixelBytes.capacity() < pixelCount * 2) {
+            pixelBytes = ByteBuffer.allocateDirect(pixelCount * 2).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        pixelBytes.clear();
+        pixelBytes.limit(pixelCount * 2);
+
+        if (!readFully(pixelBytes)) {
+            throw new IOException("The recording ends partway through a frame");
+        }
+
+        Rgb565Frame frame = mailbox.obtain(width, height);
+        pixelBytes.asShortBuffer().get(frame.getPixels(), 0, pixelCount);
+        frame.setTimestamp(timestamp);
+
+        return frame;
+    }
+
+    /**
+     * Fill the buffer from the file.
+     *
+     * @return boolean - False if the file ended before the buffer was full.
+     */
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * @return Rgb565Frame - The next frame, or null once the recording has ended or can't be read.
+     */
+    @Override
+    public Rgb565Frame latestFrame(long maxAgeMs) {
+        try {
+            return nextFrame();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /** The next frame is always ready, so this never waits. */
+    @Override
+    public Rgb565Frame awaitFrame(long maxAgeMs, long timeoutMs) {
+        return latestFrame(maxAgeMs);
+    }
+
+    /** Start playing the recording over from its first frame. */
+    public void rewind() throws IOException {
+        channel.position(FrameRecording.FILE_HEADER_BYTES);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,74 @@
+package org.blueshift.vision;
+
+import java.nio.ShortBuffer;
+
+/**
+ * A copy of one RGB565 camera frame along with the time it was captured. Frames are handed out by
+ * a {@link FrameMailbox} and their pixel arrays are reused, so a frame MUST be closed once it has
+ * been read to give its memory back to the mailbox.
+ *
+ * @author Gabriel Wong
+ * @version 1.1
+ */
+
+public class Rgb565Frame implements Rgb565Image {
+    private final FrameMailbox owner;
+
+    private short[] pixels = new short[0];
+    private ShortBuffer buffer = ShortBuffer.wrap(pixels);
+    private int width, height;
+    private long timestamp;
+
+    /**
+     * @param owner - The mailbox this frame is returned to when closed.
+     */
+    Rgb565Frame(FrameMailbox owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Make room for a frame of the given size. The pixel array is only reallocated if it is too
+     * small to hold the new frame.
+     *
+     * @param width  - The width of the frame in pixels.
+     * @param height - The height of the frame in pixels.
+     */
+    void resize(int width, int height) {
+        if (pixels.length < width * height) {
+            pixels = new short[width * height];
+            buffer = ShortBuffer.wrap(pixels);
+        }
+
+        this.width = width;
+        this.height = height;
+    }
+
+    void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+
+    /** @return short[] - The pixels of the frame, row by row with no padding between rows. */
+    public short[] getPixels() { return pixels; }
+
+    /** @return ShortBuffer - A buffer view of getPixels() that can be handed to an Rgb565Reader. */
+    @Override
+    public ShortBuffer getBuffer() { return buffer; }
+
+    @Override
+    public int getWidth() { return width; }
+    @Override
+    public int getHeight() { return height; }
+
+    /** @return int - The rows are not padded, so this is always the width. */
+    @Override
+    public int getStride() { return width; }
+
+    /** @return The time the frame was captured, in milliseconds of System.nanoTime(). */
+    public long getTimestamp() { return timestamp; }
+
+    /** @return The number of milliseconds since the frame was captured. */
+    public long getAge() { return System.nanoTime() / 1000000 - timestamp; }
+
+    /** Give the frame back to its mailbox so that its memory can be reused. */
+    public void close() {
+        owner.recycle(this);
+    }
+}
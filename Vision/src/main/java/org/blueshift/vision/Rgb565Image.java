@@ -0,0 +1,23 @@
+package org.blueshift.vision;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Any RGB565 image that the vision code can read, whether it came out of the phone's camera, a
+ * recording on disk or a benchmark. Nothing here depends on Android or Vuforia, so every stage that
+ * reads frames through this (see {@link Rgb565Reader}) can also be run on a laptop.
+ *
+ * @author Gabriel Wong
+ * @version 1.0
+ */
+
+public interface Rgb565Image {
+    /** @return ShortBuffer - The pixels of the image, one short per pixel, row by row. */
+    ShortBuffer getBuffer();
+
+    int getWidth();
+    int getHeight();
+
+    /** @return int - The number of pixels between the start of each row (at least getWidth()). */
+    int getStride();
+}
@@ -0,0 +1,118 @@
+package org.blueshift.vision;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Reads pixels straight out of an RGB565 frame buffer (such as the one returned by Vuforia's
+ * Image.getPixels()) without copying the frame into a Bitmap first. The buffer is viewed as a
+ * ShortBuffer where every short is one pixel: 5 bits of red, 6 bits of green and 5 bits of blue.
+ * Whole rows are copied into a scratch array that is reused from frame to frame, so reading a
+ * frame does not allocate anything but the buffer view.
+ *
+ * @author Gabriel Wong
+ * @version 1.1
+ */
+
+public class Rgb565Reader {
+    private ShortBuffer pixels;
+    private int width, height, stride;
+
+    //Reused between rows and frames
+    private short[] row = new short[0];
+
+    /**
+     * Point the reader at a new frame.
+     *
+     * @param buffer      - The RGB565 pixel bytes of the frame.
+     * @param width       - The width of the frame in pixels.
+     * @param height      - The height of the frame in pixels.
+     * @param strideBytes - The number of bytes between the start of each row.
+     */
+    public void wrap(ByteBuffer buffer, int width, int height, int strideBytes) {
+        //The pixels are stored in the phone's own byte order, the same as Bitmap.copyPixelsFromBuffer()
+        wrap(buffer.duplicate().order(ByteOrder.nativeOrder()).asShortBuffer(), width, height, strideBytes / 2);
+    }
+
+    /**
+     * Point the reader at an image, such as a frame that has already been copied out of the camera.
+     *
+     * @param image - The image to read.
+     */
+    public void wrap(Rgb565Image image) {
+        wrap(image.getBuffer(), image.getWidth(), image.getHeight(), image.getStride());
+    }
+
+    /**
+     * Point the reader at a frame held in a ShortBuffer.
+     *
+     * @param buffer       - The RGB565 pixels of the frame, one short per pixel.
+     * @param width        - The width of the frame in pixels.
+     * @param height       - The height of the frame in pixels.
+     * @param stridePixels - The number of pixels between the start of each row.
+     */
+    public void wrap(ShortBuffer buffer, int width, int height, int stridePixels) {
+        this.pixels = buffer;
+        this.width = width;
+        this.height = height;
+        this.stride = stridePixels;
+
+        if (row.length < width) {
+            row = new short[width];
+        }
+    }
+
+    /**
+     * Point the reader at the same frame as another reader. Both readers can then be used from
+     * different threads at the same time, since each keeps its own position and row buffer.
+     *
+     * @param other - The reader to share a frame with.
+     */
+    public void wrap(Rgb565Reader other) {
+        wrap(other.pixels.duplicate(), other.width, other.height, other.stride);
+    }
+
+    /**
+     * Copy an entire row out of the frame in one bulk operation. The returned array is reused, so
+     * it is only valid until the next call.
+     *
+     * @param y - The row to read.
+     * @return short[] - The RGB565 pixels of the row (only the first getWidth() are valid).
+     */
+    public short[] row(int y) {
+        pixels.position(y * stride);
+        pixels.get(row, 0, width);
+        return row;
+    }
+
+    /**
+     * Read a single pixel. This is fine for a few pixels; use row() when scanning the frame.
+     *
+     * @return short - The RGB565 pixel at (x, y).
+     */
+    public short get(int x, int y) {
+        return pixels.get(y * stride + x);
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    /** @return [0, 255] - The red value of an RGB565 pixel, scaled the same way as Color.red(). */
+    public static int red(short pixel) {
+        int red = (pixel >> 11) & 0x1f;
+        return (red << 3) | (red >> 2);
+    }
+
+    /** @return [0, 255] - The green value of an RGB565 pixel, scaled the same way as Color.green(). */
+    public static int green(short pixel) {
+        int green = (pixel >> 5) & 0x3f;
+        return (green << 2) | (green >> 4);
+    }
+
+    /** @return [0, 255] - The blue value of an RGB565 pixel, scaled the same way as Color.blue(). */
+    public static int blue(short pixel) {
+        int blue = pixel & 0x1f;
+        return (blue << 3) | (blue >> 2);
+    }
+}
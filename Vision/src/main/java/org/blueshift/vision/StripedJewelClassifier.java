@@ -0,0 +1,273 @@
+package org.blueshift.vision;
+
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link JewelClassifier} that splits the frame into horizontal stripes and builds their integral
+ * images on every core at once. Each region is scored against every stripe and the counts are added
+ * together once all of the stripes are done, so the result is exactly the same as classifying the
+ * frame on one thread. The extra speed is meant to be spent on looking at more pixels (a step of 1
+ * looks at all of them).
+ *
+ * An adaptive striped classifier also picks its red and blue cuts from the frames (see
+ * {@link OtsuThresholds}, and AdaptiveJewelClassifier for why). Every stripe builds the histogram of
+ * its own rows in the same pass as its integral image, which uses the cuts picked from the last
+ * frame. Once the stripes are done their histograms are added together to pick the next frame's
+ * cuts, so there is still one pass over the frame and one wait for the pool. The counts are again
+ * exactly those of the single threaded AdaptiveJewelClassifier.
+ *
+ * A plain fixed thread pool is used instead of a fork-join pool since ForkJoinPool is not available
+ * on the older (API 19) robot controller phones.
+ *
+ * @author Gabriel Wong
+ * @version 1.5
+ */
+
+public class StripedJewelClassifier extends JewelClassifier {
+    private static ExecutorService sharedPool;
+
+    private final ExecutorService pool;
+    private final List<Stripe> stripes = new ArrayList<Stripe>();
+
+    //Whether the cuts are picked from the frames, the histogram of the whole frame, and the cuts the
+    //next frame is counted with
+    private final boolean adaptive;
+    private final OtsuThresholds thresholds = new OtsuThresholds();
+    private int redCut = ColorIntegralImage.NO_CUT, blueCut = ColorIntegralImage.NO_CUT;
+
+    //The shrunk frame, each stripe filling in its own rows of it
+    private short[] decimated = new short[0];
+    private int decimatedWidth, decimatedHeight;
+
+    /**
+     * Classify on a pool shared by every striped classifier, with one stripe per core.
+     *
+     * @param step  - Look at every step-th pixel in each direction. 1 looks at every pixel.
+     * @param sides - The sections of the frame to count pixels in.
+     */
+    public StripedJewelClassifier(int step, CameraSide... sides) {
+        this(sharedPool(), Runtime.getRuntime().availableProcessors(), step, sides);
+    }
+
+    /**
+     * @param pool        - The threads to classify stripes on.
+     * @param stripeCount - How many stripes to split each frame into.
+     * @param step        - Look at every step-th pixel in each direction. 1 looks at every pixel.
+     * @param sides       - The sections of the frame to count pixels in.
+     */
+    public StripedJewelClassifier(ExecutorService pool, int stripeCount, int step, CameraSide... sides) {
+        this(pool, stripeCount, ColorClassTable.jewels(), 1, step, CameraSide.regionsOf(sides));
+    }
+
+    /**
+     * @param pool         - The threads to classify stripes on.
+     * @param stripeCount  - How many stripes to split each frame into.
+     * @param colorClasses - The table that decides which pixels are red and which are blue.
+     * @param decimation   - Shrink the frame this many times (1, 2, 4 or 8) before classifying it.
+     * @param step         - Look at every step-th pixel (of the shrunk frame) in each direction.
+     * @param regions      - The regions of the frame to count pixels in.
+     */
+    public StripedJewelClassifier(ExecutorService pool, int stripeCount, ColorClassTable colorClasses, int decimation, int step, FrameRegion... regions) {
+        this(pool, stripeCount, colorClasses, decimation, step, false, regions);
+    }
+
+    /**
+     * @param pool         - The threads to classify stripes on.
+     * @param stripeCount  - How many stripes to split each frame into.
+     * @param colorClasses - The table that decides which pixels can be red and which can be blue.
+     * @param decimation   - Shrink the frame this many times (1, 2, 4 or 8) before classifying it.
+     * @param step         - Look at every step-th pixel (of the shrunk frame) in each direction.
+     * @param adaptive     - Whether to pick the red and blue cuts from each frame.
+     * @param regions      - The regions of the frame to count pixels in.
+     */
+    public StripedJewelClassifier(ExecutorService pool, int stripeCount, ColorClassTable colorClasses, int decimation, int step, boolean adaptive, FrameRegion... regions) {
+        super(colorClasses, decimation, step, regions);
+        this.pool = pool;
+        this.adaptive = adaptive;
+
+        for (int i = 0; i < Math.max(1, stripeCount); i++) {
+            stripes.add(new Stripe());
+        }
+    }
+
+    /**
+     * Replace every stripe, and the shrunk frame they share, with new ones. Used when a classify()
+     * is interrupted: the old stripes may still be running and writing into their state, so they
+     * are left to finish on their own with state that nothing reads again.
+     */
+    private void replaceStripes() {
+        int stripeCount = stripes.size();
+        stripes.clear();
+
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.add(new Stripe());
+        }
+
+        decimated = new short[0];
+    }
+
+    /**
+     * The pool used by the default constructor. Its threads are daemons so that they never keep the
+     * app from closing, and it lives for as long as the app does.
+     *
+     * @return ExecutorService - A fixed pool with one thread per core.
+     */
+    public static synchronized ExecutorService sharedPool() {
+        if (sharedPool == null) {
+            sharedPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "StripedJewelClassifier");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return sharedPool;
+    }
+
+    /**
+     * Shrink (if this classifier decimates) and build the integral image of each stripe on its own
+     * thread, and then add the stripes' counts together. An adaptive classifier has every stripe
+     * build its histogram along with its integral image, and picks the next frame's cuts from all
+     * of them.
+     *
+     * @param frame - A reader pointed at the RGB565 frame to classify.
+     * @return PixelCounts - The red and blue counts of each region. If the thread is interrupted
+     *                       every count is zero, since stripes may still be running (see
+     *                       replaceStripes()).
+     */
+    @Override
+    public PixelCounts classify(Rgb565Reader frame) {
+        decimatedWidth = FrameDecimator.decimatedLength(frame.getWidth(), decimation);
+        decimatedHeight = FrameDecimator.decimatedLength(frame.getHeight(), decimation);
+
+        if (decimation > 1 && decimated.length < decimatedWidth * decimatedHeight) {
+            decimated = new short[decimatedWidth * decimatedHeight];
+        }
+
+        int rowsNeeded = rowsNeeded(decimatedHeight);
+        int stripeHeight = (rowsNeeded + stripes.size() - 1) / stripes.size();
+
+        //Every band only samples the rows on the frame's step grid, so no row is counted twice
+        for (int i = 0; i < stripes.size(); i++) {
+            stripes.get(i).setUp(frame, decimated, Math.min(rowsNeeded, i * stripeHeight), Math.min(rowsNeeded, (i + 1) * stripeHeight));
+        }
+
+        int[] redCounts = new int[regions.length];
+        int[] blueCounts = new int[regions.length];
+
+        List<Future<Void>> results = null;
+
+        try {
+            results = pool.invokeAll(stripes);
+
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            //The stripes' images can't be trusted, so nothing is counted (no jewel is found). Any
+            //stripe still running is cancelled, and the next frame gets stripes of its own
+            if (results != null) {
+                for (Future<Void> result : results) {
+                    result.cancel(true);
+                }
+            }
+
+            replaceStripes();
+            Thread.currentThread().interrupt();
+            return new PixelCounts(regions, redCounts, blueCounts);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        for (Stripe stripe : stripes) {
+            addCounts(stripe.integralImage, redCounts, blueCounts);
+        }
+
+        if (adaptive) {
+            thresholds.clear();
+            for (Stripe stripe : stripes) {
+                thresholds.add(stripe.thresholds);
+            }
+
+            redCut = thresholds.redCut();
+            blueCut = thresholds.blueCut();
+        }
+
+        return new PixelCounts(regions, redCounts, blueCounts);
+    }
+
+    /** @return int - How far (in 5 bit levels) red must beat blue to count in the next frame. */
+    public int getRedCut() { return redCut; }
+
+    /** @return int - How far (in 5 bit levels) blue must beat red to count in the next frame. */
+    public int getBlueCut() { return blueCut; }
+
+    /** One horizontal band of the frame, along with everything needed to build its integral image. */
+    private class Stripe implements Callable<Void> {
+        private final Rgb565Reader reader = new Rgb565Reader();
+        private final Rgb565Reader decimatedReader = new Rgb565Reader();
+        private final FrameDecimator decimator = new FrameDecimator();
+        private final ColorIntegralImage integralImage = new ColorIntegralImage(colorClasses);
+        private final OtsuThresholds thresholds = new OtsuThresholds();
+
+        //The shrunk frame this stripe fills in, and a view of it, only made again when it changes
+        private short[] decimated = new short[0];
+        private ShortBuffer decimatedBuffer = ShortBuffer.wrap(decimated);
+        private int decimatedWidth, decimatedHeight;
+
+        private int yFrom, yTo;
+
+        /**
+         * Point the stripe at its band of the next frame. Everything it needs is copied in, so a
+         * stripe left running by an interrupted classify() never touches the next frame's state.
+         */
+        void setUp(Rgb565Reader frame, short[] decimated, int yFrom, int yTo) {
+            reader.wrap(frame);
+
+            if (this.decimated != decimated) {
+                this.decimated = decimated;
+                decimatedBuffer = ShortBuffer.wrap(decimated);
+            }
+
+            this.decimatedWidth = StripedJewelClassifier.this.decimatedWidth;
+            this.decimatedHeight = StripedJewelClassifier.this.decimatedHeight;
+            this.yFrom = yFrom;
+            this.yTo = yTo;
+        }
+
+        @Override
+        public Void call() {
+            Rgb565Reader image = reader;
+
+            if (decimation > 1) {
+                //Only this stripe's rows of the shrunk frame are written and then read
+                decimator.decimate(reader, decimation, decimated, yFrom, yTo);
+
+                decimatedBuffer.clear();
+                decimatedReader.wrap(decimatedBuffer, decimatedWidth, decimatedHeight, decimatedWidth);
+                image = decimatedReader;
+            }
+
+            if (adaptive) {
+                thresholds.clear();
+                thresholds.setWindow(firstColumn(decimatedWidth), columnsNeeded(decimatedWidth), firstRow(decimatedHeight), yTo);
+                integralImage.build(image, step, yFrom, yTo, redCut, blueCut, thresholds);
+            } else {
+                integralImage.build(image, step, yFrom, yTo);
+            }
+
+            return null;
+        }
+    }
+}